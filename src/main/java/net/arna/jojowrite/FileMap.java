@@ -23,4 +23,11 @@ public class FileMap extends HashMap<FileType, File> {
 
         return lastFile;
     }
+
+    @Override
+    public File remove(Object key) {
+        File lastFile = super.remove(key);
+        controller.updateSelectedFileDisplay();
+        return lastFile;
+    }
 }
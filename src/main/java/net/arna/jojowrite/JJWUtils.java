@@ -18,6 +18,11 @@ public interface JJWUtils {
     String ASSEMBLY_FILE_EXTENSION = ".x16asm";
     String PATCH_FILE_EXTENSION = ".patch";
 
+    /**
+     * Assembly addresses are ROM offsets in the 06xxxxxx region, see {@link net.arna.jojowrite.patch.Patcher}.
+     */
+    int ROM_ADDRESS_BASE = 0x06000000;
+
     Pattern hex = Pattern.compile("[0-9a-fA-F]+");
     static boolean isHexadecimal(CharSequence text) {
         return hex.matcher(text).matches();
@@ -26,6 +31,14 @@ public interface JJWUtils {
         return (c >= 'A' && c <= 'F') || (c >= 'a' && c <= 'f') || (c >= '0' && c <= '9');
     }
 
+    /**
+     * Hexadecimal with '?' wildcard nibbles and whitespace, see {@link net.arna.jojowrite.rom.MaskedPattern#parse(String)}.
+     */
+    Pattern maskedHex = Pattern.compile("[0-9a-fA-F? ]+");
+    static boolean isMaskedHexadecimal(CharSequence text) {
+        return maskedHex.matcher(text).matches();
+    }
+
     Pattern dec = Pattern.compile("[0-9]+");
     static boolean isDecimal(String text) {
         return dec.matcher(text).matches();
@@ -63,6 +76,13 @@ public interface JJWUtils {
         });
     }
 
+    static TextFormatter<?> maskedHexadecimalTextFormatter() {
+        return new TextFormatter<>(c -> {
+            if (c.isContentChange() && !isMaskedHexadecimal(c.getText())) c.setText("");
+            return c;
+        });
+    }
+
     String HEX_DIGITS = "0123456789abcdef";
     byte[] HEX_ARRAY = HEX_DIGITS.getBytes(StandardCharsets.US_ASCII);
     static String bytesToHex(byte[] bytes) {
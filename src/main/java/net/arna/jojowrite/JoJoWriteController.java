@@ -5,7 +5,9 @@ import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.Node;
 import javafx.scene.control.Alert;
+import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TextArea;
 import javafx.scene.layout.HBox;
@@ -13,9 +15,20 @@ import javafx.scene.layout.VBox;
 import javafx.stage.StageStyle;
 import net.arna.jojowrite.JJWUtils.FileType;
 import net.arna.jojowrite.asm.Compiler;
-import net.arna.jojowrite.asm.instruction.Instruction;
+import net.arna.jojowrite.asm.Disassembler;
+import net.arna.jojowrite.asm.OpcodePattern;
 import net.arna.jojowrite.manager.ScrollingLabelManager;
 import net.arna.jojowrite.node.*;
+import net.arna.jojowrite.overwrite.OverwriteFile;
+import net.arna.jojowrite.overwrite.OverwriteStore;
+import net.arna.jojowrite.patch.PatchFile;
+import net.arna.jojowrite.patch.Patcher;
+import net.arna.jojowrite.rom.MaskedPattern;
+import net.arna.jojowrite.rom.OpcodeMatcher;
+import net.arna.jojowrite.rom.RomImage;
+import net.arna.jojowrite.rom.RomIndex;
+import net.arna.jojowrite.rom.RomMatcher;
+import net.arna.jojowrite.rom.RomSearch;
 import org.fxmisc.flowless.VirtualizedScrollPane;
 import org.fxmisc.richtext.CodeArea;
 import org.fxmisc.richtext.StyleClassedTextArea;
@@ -23,18 +36,20 @@ import org.fxmisc.richtext.StyleClassedTextArea;
 import java.io.*;
 import java.net.URL;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Stream;
+import java.util.function.Consumer;
 
-import static net.arna.jojowrite.JJWUtils.ASSEMBLY_FILE_EXTENSION;
-import static net.arna.jojowrite.JJWUtils.OVERWRITE_FILE_EXTENSION;
 import static net.arna.jojowrite.TextStyles.BASIC_TEXT;
 
 public class JoJoWriteController implements Initializable {
     private static JoJoWriteController instance;
 
-    private RandomAccessFile romRAF, outRomRAF;
+    private RomImage rom;
+    /**
+     * Index of {@link JoJoWriteController#rom}, null until built (or if indexing is disabled via -Djojowrite.noRomIndex=true).
+     */
+    private RomIndex romIndex;
+    private static final boolean INDEX_ROMS = !Boolean.getBoolean("jojowrite.noRomIndex");
     private File outROM;
     public final FileMap files = new FileMap(this);
 
@@ -53,11 +68,17 @@ public class JoJoWriteController implements Initializable {
         public TextArea errorArea;
 
     @FXML
-    public ScrollPane overwriteScrollPane;
-        @FXML
-        public OverwriteBox overwrites;
+    public OverwriteBox overwrites;
+    /**
+     * Whether overwrite files are saved in the binary format of {@link OverwriteFile}, rather than as text.
+     * Follows the format of the last opened overwrite file.
+     */
+    @FXML
+    public CheckMenuItem binaryOverwriteFormat;
     @FXML
     public HBox overwriteControls;
+        @FXML
+        public ProgressBar overwriteLoadProgress;
 
     @FXML
     public VirtualizedScrollPane<?> outputScrollPane;
@@ -80,7 +101,10 @@ public class JoJoWriteController implements Initializable {
 
     private Map<FileType, Set<Node>> fileTypeNodeMap;
 
-    private final Timer overwriteLoadTimer = new Timer();
+    /**
+     * Incremented whenever an overwrite file starts loading or the overwrites are replaced otherwise, so outdated loads are dropped.
+     */
+    private int overwriteLoadId = 0;
     public static JoJoWriteController getInstance() {
         return instance;
     }
@@ -90,7 +114,7 @@ public class JoJoWriteController implements Initializable {
         instance = this;
 
         Set<Node> assemblyNodes = Set.of(errorScrollPane, assemblyScrollPane, outputScrollPane);
-        Set<Node> overwriteNodes = Set.of(romData, romBox, overwriteScrollPane, overwrites, overwriteControls);
+        Set<Node> overwriteNodes = Set.of(romData, romBox, overwrites, overwriteControls);
         //Set<Node> romNodes = Set.of(romTextBox);
         Set<Node> patchNodes = Set.of(patchControls, patchScrollPane);
 
@@ -114,12 +138,7 @@ public class JoJoWriteController implements Initializable {
 
         romBox.getArea().setAddressOutputLabel(romAreaAddress);
 
-        // Loads overwrites any time the overwriteLoadQueue isn't empty
-        overwriteLoadTimer.scheduleAtFixedRate(new OverwriteLoadTask(), 0, 1);
-        // Gives overwrites a reference to its parent.
-        overwrites.assignParentPane(overwriteScrollPane);
-
-        Compiler.setErrorOutputArea(errorArea);
+        overwriteLoadProgress.managedProperty().bind(overwriteLoadProgress.visibleProperty());
 
         ScrollingLabelManager.getInstance().addLabel(selectedFileDisplay);
 
@@ -143,13 +162,19 @@ public class JoJoWriteController implements Initializable {
     }
 
     public void saveFile(FileType type) {
+        if (type == FileType.OVERWRITE && binaryOverwriteFormat.isSelected()) {
+            try {
+                OverwriteFile.write(overwrites.getStore(), files.get(type));
+                System.out.println("Successfully saved " + type.name() + " file in the binary format.");
+            } catch (IOException e) {
+                JJWUtils.printException(e, "An error occurred while saving file.");
+            }
+            return;
+        }
+
         try ( FileWriter outWriter = new FileWriter(files.get(type)) ) {
             switch (type) {
-                case OVERWRITE -> {
-                    for (int i = 0; i < overwrites.size(); i++)
-                        if (overwrites.get(i) instanceof Overwrite overwrite)
-                            outWriter.append(overwrite.toString()).append("\n");
-                }
+                case OVERWRITE -> overwrites.getStore().write(outWriter);
 
                 case ASSEMBLY -> outWriter.append(assemblyArea.getText());
 
@@ -267,25 +292,16 @@ public class JoJoWriteController implements Initializable {
 
         try
         {
-            FileReader reader = new FileReader(patch);
-            BufferedReader br = new BufferedReader(reader);
-            files.put(FileType.ROM, new File(br.readLine()));
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (line.endsWith(OVERWRITE_FILE_EXTENSION)) {
-                    files.put(FileType.OVERWRITE, new File(line));
-                } else if (line.endsWith(ASSEMBLY_FILE_EXTENSION)) {
-                    files.put(FileType.ASSEMBLY, new File(line));
-                } else {
-                    File newOutROM = new File(line);
-                    if (newOutROM.canWrite() && newOutROM.length() == romRAF.length()) {
-                        outROM = newOutROM;
-                        System.out.println("Output ROM file found in patch file, setting to: " + line);
-                    }
-                    System.out.println("Wrong file type referenced in patch file; " + line);
-                }
+            PatchFile patchFile = PatchFile.read(patch);
+            files.put(FileType.ROM, patchFile.sourceROM());
+            for (PatchFile.Entry entry : patchFile.entries())
+                files.put(entry.type(), entry.file());
+
+            File newOutROM = patchFile.outROM();
+            if (newOutROM != null && newOutROM.canWrite() && rom != null && newOutROM.length() == rom.length()) {
+                outROM = newOutROM;
+                System.out.println("Output ROM file found in patch file, setting to: " + newOutROM);
             }
-            br.close();
         }
         catch (Exception e) {
             JJWUtils.printException(e, "An error occurred while opening patch file.");
@@ -324,142 +340,11 @@ public class JoJoWriteController implements Initializable {
         if (patch == null) patch = selectPatch();
         if (patch == null) return;
 
-        RandomAccessFile sourceRomRAF = null;
-        File sourceROM = null;
-        Map<File, FileType> toProcess = new LinkedHashMap<>(); // The user must be able to select their overwriting order
-        try {
-            FileReader reader = new FileReader(patch);
-            BufferedReader br = new BufferedReader(reader);
-            sourceROM = new File(br.readLine());
-            sourceRomRAF = new RandomAccessFile(sourceROM, "r");
-            String line;
-            while ((line = br.readLine()) != null) {
-                FileType type;
-                if (line.endsWith(OVERWRITE_FILE_EXTENSION)) {
-                    type = FileType.OVERWRITE;
-                } else if (line.endsWith(ASSEMBLY_FILE_EXTENSION)) {
-                    type = FileType.ASSEMBLY;
-                } else {
-                    //todo: scream at the user for this
-                    System.out.println("Wrong file type referenced in patch file; " + line);
-                    continue;
-                }
-                toProcess.put(new File(line), type);
-            }
-            br.close();
-        }
-        catch (Exception e) {
-            JJWUtils.printException(e, "An error occurred while reading patch file.");
-        }
-
-        if (sourceROM == null || sourceRomRAF == null || !sourceROM.exists()) {
-            System.out.println("Couldn't locate source ROM for patching.");
-            return;
-        }
-
-        System.out.println("Patching ROM " + sourceROM + "->" + outROM + "...");
-        Path outROMPath = outROM.toPath();
-        try {
-            if (outRomRAF != null) outRomRAF.close();
-            Files.delete(outROMPath);
-            System.out.println("Deleted out ROM.");
-
-            Files.createFile(outROMPath);
-            outRomRAF = new RandomAccessFile(outROM, "rw");
-            System.out.println("Created and accessed new out ROM.");
-
-            System.out.println("Copying src ROM -> out ROM...");
-            sourceRomRAF.seek(0);
-            int chunkSize = (int) sourceRomRAF.length() / 256;
-            assert sourceRomRAF.length() % chunkSize == 0;
-            byte[] data = new byte[chunkSize];
-            outRomRAF.seek(0);
-
-            while ( sourceRomRAF.read(data) != -1) {
-                // which address did it read up to, excluding current, unread address
-                //long endAddress = romRAF.getFilePointer() - 1;
-                //long startAddress = endAddress - chunkSize + 1;
-                outRomRAF.write(data);
-            }
-            System.out.println("Copy complete.");
-        } catch (IOException e) {
-            JJWUtils.printException(e, "An error occurred while copying source to destination ROM.");
-        }
-
-        try {
-            if (sourceRomRAF.length() != outRomRAF.length())
-                throw new IllegalStateException("Source and destination ROM lengths do not match!");
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        for (Map.Entry<File, FileType> fileEntry : toProcess.entrySet()) {
-            File toApply = fileEntry.getKey();
-            FileType fileType = fileEntry.getValue();
-
-            switch (fileType) {
-                case ASSEMBLY -> {
-                    try (FileReader reader = new FileReader(toApply)) {
-                        BufferedReader bufferedReader = new BufferedReader(reader);
-                        String line;
-                        while ( (line = bufferedReader.readLine()) != null) {
-                            if (line.isEmpty() || line.startsWith(AssemblyArea.COMMENT_PREFIX)) continue;
-                            String[] addressInstruction = line.split(":"); // Address:Instruction
-                            if (addressInstruction.length < 2) {
-                                //todo: yell at the user
-                                System.out.println("Address with no instruction; " + addressInstruction[0]);
-                                continue;
-                            }
-
-                            String addressStr = addressInstruction[0];
-                            String instructionStr = addressInstruction[1];
-                            Stream<Instruction> possible = Compiler.getPossibleInstructions(addressStr, instructionStr);
-                            possible.findFirst().ifPresentOrElse(
-                                    instruction -> {
-                                        try {
-                                            outRomRAF.seek(Integer.parseUnsignedInt(addressStr.substring(2), 16)); // Removing the "06"
-                                            outRomRAF.write(Compiler.compileToBytes(instruction, addressStr, instructionStr));
-                                            //System.out.println("Applying ASM: " + addressStr + ":" + instructionStr);
-                                        } catch (Exception e) {
-                                            JJWUtils.printException(e, "Error applying machine code to ROM!");
-                                        }
-                                    },
-                                    () -> {
-                                        throw new IllegalStateException("Tried to write unparsable Assembly to ROM!");
-                                    }
-                            );
-                        }
-                    } catch (Exception e) {
-                        JJWUtils.printException(e, "Failed to parse Assembly file during patching!");
-                    }
-                }
-                case OVERWRITE -> {
-                    try (FileReader reader = new FileReader(toApply)) {
-                        BufferedReader bufferedReader = new BufferedReader(reader);
-                        String line;
-                        while ( (line = bufferedReader.readLine()) != null) {
-                            String[] addressOverwriteComment = line.split(";"); // Address;Overwrite;Comment
-                            outRomRAF.seek(Integer.parseUnsignedInt(addressOverwriteComment[0], 16));
-                            byte[] overwriteBytes = JJWUtils.hexStringToBytes(addressOverwriteComment[1]);
-                            outRomRAF.write(overwriteBytes);
-                        }
-                    } catch (Exception e) {
-                        JJWUtils.printException(e, "Failed to parse Overwrite file during patching!");
-                    }
-                }
-                default -> throw new IllegalStateException("Non-Assembly/Overwrite file found in toProcess.entrySet()!");
-            }
-
-            System.out.println("Applied " + toApply);
-        }
-
         try {
-            if (sourceRomRAF.length() != outRomRAF.length())
-                throw new IllegalStateException("Source and destination ROM lengths do not match!");
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            Patcher.patch(PatchFile.read(patch), outROM);
+        } catch (Exception e) {
+            JJWUtils.printException(e, "An error occurred while patching ROM.");
         }
-        System.out.println("Patching complete.");
     }
 
     /** ROM **/
@@ -479,10 +364,15 @@ public class JoJoWriteController implements Initializable {
      */
     void updateROMArea(File ROM) {
         try {
-            if (romRAF != null) romRAF.close();
+            if (rom != null) rom.close();
+            rom = null;
+            if (romIndex != null) romIndex.close();
+            romIndex = null;
+            romBox.setRom(null);
             if (ROM != null) {
-                romRAF = new RandomAccessFile(ROM, "r");
-                romBox.setRomRAF(romRAF);
+                rom = RomImage.openReadOnly(ROM);
+                romBox.setRom(rom);
+                if (INDEX_ROMS) indexROM(rom);
                 if (openType == FileType.OVERWRITE || openType == FileType.ROM) {
                     romBox.goToZero();
                 }
@@ -492,6 +382,25 @@ public class JoJoWriteController implements Initializable {
         }
     }
 
+    /**
+     * Loads or builds the index of indexedRom in the background, searches fall back to scanning the ROM until it is ready.
+     */
+    private void indexROM(RomImage indexedRom) {
+        RomIndex.loadOrBuildAsync(indexedRom).whenComplete((index, e) -> Platform.runLater(() -> {
+            if (e != null) {
+                System.out.println("Couldn't index ROM, searches will scan it instead: " + e.getCause().getMessage());
+                return;
+            }
+            if (rom != indexedRom) { // Another ROM was opened meanwhile
+                try {
+                    index.close();
+                } catch (IOException ignored) {}
+                return;
+            }
+            romIndex = index;
+        }));
+    }
+
     public void openSelectedROMFile() {
         openSelectedFile(FileType.ROM);
         romBox.goToZero();
@@ -503,48 +412,59 @@ public class JoJoWriteController implements Initializable {
 
     /** OVERWRITE **/
     public void newOverwriteFile() {
-        if (files.get(FileType.OVERWRITE) != newFile(FileType.OVERWRITE)) // Selected new file
+        if (files.get(FileType.OVERWRITE) != newFile(FileType.OVERWRITE)) { // Selected new file
+            endOverwriteLoad();
             overwrites.clear();
-        setOpenType(FileType.OVERWRITE);
-    }
-
-    private class OverwriteLoadTask extends TimerTask {
-        @Override
-        public void run() {
-            Platform.runLater(() -> {
-                String raw = overwriteLoadQueue.poll();
-                if (raw == null) return;
-                Overwrite.fromString(raw).assignOverwriteBox(overwrites, false);
-                overwrites.layout();
-                overwrites.updateVisibility();
-            });
         }
+        setOpenType(FileType.OVERWRITE);
     }
 
-    public static final Queue<String> overwriteLoadQueue = new LinkedList<>();
     public void openOverwriteFile() {
         if (selectOverwriteFile() == null) return;
         loadOverwriteFile();
     }
 
+    /**
+     * Reads the selected overwrite file (in either format) in the background, then shows all of its overwrites at once.
+     * The overwrites can't be edited meanwhile.
+     */
     private void loadOverwriteFile() {
         setOpenType(FileType.OVERWRITE);
         overwrites.clear();
 
-        try (FileReader fileReader = new FileReader(files.get(FileType.OVERWRITE))) {
-            BufferedReader bufferedReader = new BufferedReader(fileReader);
-            overwriteLoadQueue.clear();
-            String line;
-            while ((line = bufferedReader.readLine()) != null)
-                overwriteLoadQueue.add(line);
-            bufferedReader.close();
-        } catch (Exception e) {
-            JJWUtils.printException(e, "An error occurred while opening overwrite file.");
-        }
+        final int loadId = endOverwriteLoad();
+        final File file = files.get(FileType.OVERWRITE);
+        binaryOverwriteFormat.setSelected(OverwriteFile.isBinary(file));
+        overwrites.setDisable(true);
+        overwriteLoadProgress.setProgress(0.0);
+        overwriteLoadProgress.setVisible(true);
+
+        final long startTime = System.currentTimeMillis();
+        OverwriteStore.readAsync(file, progress -> Platform.runLater(() -> {
+            if (loadId == overwriteLoadId) overwriteLoadProgress.setProgress(progress);
+        })).whenComplete((store, e) -> Platform.runLater(() -> {
+            if (loadId != overwriteLoadId) return; // Another file was opened meanwhile
+            endOverwriteLoad();
+            if (e != null) {
+                System.out.println("An error occurred while opening overwrite file: " + e.getCause().getMessage());
+                return;
+            }
+            System.out.println("Loaded " + store.size() + " overwrites in " + (System.currentTimeMillis() - startTime) + "ms: " + file);
+            overwrites.setStore(store);
+            refreshOverwrites();
+        }));
 
         romBox.getArea().requestFocus();
-        refreshOverwrites();
-        overwrites.updateVisibility();
+    }
+
+    /**
+     * Drops any overwrite file still loading, and re-enables editing overwrites.
+     * @return The ID of the next load.
+     */
+    private int endOverwriteLoad() {
+        overwriteLoadProgress.setVisible(false);
+        overwrites.setDisable(false);
+        return ++overwriteLoadId;
     }
 
     public File selectOverwriteFile() {
@@ -577,8 +497,7 @@ public class JoJoWriteController implements Initializable {
 
     private void loadAssembly() {
         setOpenType(FileType.ASSEMBLY);
-        output.clear();
-        assemblyArea.clear();
+        assemblyArea.clear(); // Also clears the output
 
         try
         {
@@ -593,7 +512,6 @@ public class JoJoWriteController implements Initializable {
 
             assemblyArea.requestFocus();
             assemblyArea.update();
-            assemblyArea.updateVisualsOnly(true);
         }
         catch (Exception e) {
             JJWUtils.printException(e, "An error occurred while opening assembly file.");
@@ -616,6 +534,74 @@ public class JoJoWriteController implements Initializable {
         selectAndSaveFile(FileType.ASSEMBLY);
     }
 
+    /**
+     * Prompts for a ROM range and disassembles it into a new, unsaved assembly document.
+     * Defaults to the range currently shown in the {@link ROMBox}.
+     */
+    public void disassembleROMRange() {
+        if (rom == null) {
+            System.out.println("Tried to disassemble without an open ROM!");
+            return;
+        }
+
+        final long shownAddress = romBox.getArea().getAddress();
+        var dialog = DialogHelper.createStyledTextInputDialog("Disassemble ROM range", "Start-End (exclusive) ROM address, e.g. 280000-280400");
+        dialog.getDialogPane().getStyleClass().add("help-dialog");
+        dialog.getEditor().getStyleClass().add("main");
+        dialog.getEditor().setText(Long.toHexString(shownAddress) + "-" + Long.toHexString(shownAddress + romBox.getArea().getByteCapacity()));
+        dialog.setGraphic(null);
+        dialog.showAndWait().ifPresent(rangeStr -> {
+            final String[] bounds = rangeStr.split("-");
+            if (bounds.length != 2) {
+                System.out.println("Invalid disassembly range: " + rangeStr);
+                return;
+            }
+            try {
+                disassembleToAssembly(
+                        Integer.parseUnsignedInt(bounds[0].strip(), 16),
+                        Integer.parseUnsignedInt(bounds[1].strip(), 16)
+                );
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid disassembly range: " + rangeStr);
+            }
+        });
+    }
+
+    /**
+     * The most bytes {@link JoJoWriteController#disassembleToAssembly(int, int)} decodes at once, 128k instructions.
+     * The whole range is held as a String, and larger documents are unwieldy in the {@link AssemblyArea} anyway.
+     */
+    public static final int MAX_DISASSEMBLY_LENGTH = 0x40000;
+
+    /**
+     * Disassembles the ROM bytes [startAddress, endAddress) into a new, unsaved assembly document.
+     * The whole range is decoded into a single String and inserted at once, so the {@link AssemblyArea} only processes one change.
+     * Ranges without a whole instruction or over {@link JoJoWriteController#MAX_DISASSEMBLY_LENGTH} bytes are rejected.
+     */
+    public void disassembleToAssembly(int startAddress, int endAddress) {
+        startAddress &= ~1; // Instructions are word aligned
+        endAddress = Math.min(endAddress, rom.length());
+        if (startAddress < 0 || endAddress - startAddress < 2) {
+            System.out.println("Disassembly range contains no instruction: " + Integer.toHexString(startAddress) + "-" + Integer.toHexString(endAddress));
+            return;
+        }
+        if (endAddress - startAddress > MAX_DISASSEMBLY_LENGTH) {
+            System.out.println("Disassembly range is over " + Integer.toHexString(MAX_DISASSEMBLY_LENGTH) + " bytes long: "
+                    + Integer.toHexString(startAddress) + "-" + Integer.toHexString(endAddress));
+            return;
+        }
+
+        final StringBuilder assembly = new StringBuilder();
+        Disassembler.disassemble(rom.read(startAddress, endAddress - startAddress), JJWUtils.ROM_ADDRESS_BASE + startAddress, assembly);
+        if (!assembly.isEmpty()) assembly.setLength(assembly.length() - 1); // Trailing line break
+
+        files.remove(FileType.ASSEMBLY); // Saving prompts for a new file
+        setOpenType(FileType.ASSEMBLY);
+        assemblyArea.replaceText(assembly.toString());
+        assemblyArea.requestFocus();
+        assemblyArea.update();
+    }
+
     /**
      * Displays the currently selected files at the bottom of the screen.
      */
@@ -633,11 +619,9 @@ public class JoJoWriteController implements Initializable {
     }
 
     public void createOverwrite(String addressText, String overwriteText, String commentText) {
-        overwriteScrollPane.setVvalue(0.0);
-        Overwrite overwrite = new Overwrite(overwrites);
-        overwrite.bufferText(addressText, overwriteText, commentText);
-        overwrites.updateVisibility();
-        overwrite.focus();
+        int address = addressText.isEmpty() ? 0 : Integer.parseUnsignedInt(addressText, 16);
+        overwrites.insert(0, address, JJWUtils.hexStringToBytes(overwriteText), commentText);
+        overwrites.showAndFocus(0);
     }
 
     public void showOverwritesAsLUA() {
@@ -646,13 +630,13 @@ public class JoJoWriteController implements Initializable {
     }
 
     public void showInROM(int address, int length) {
-        if (romBox.getRomRAF() == null) {
+        if (romBox.getRom() == null) {
             File ROM = files.get(JJWUtils.FileType.ROM);
             if (ROM == null) return;
             try {
-                romRAF = new RandomAccessFile(ROM, "r");
-                romBox.setRomRAF(romRAF);
-                System.out.println("romRAF was unset despite valid ROM file in FileMap!");
+                rom = RomImage.openReadOnly(ROM);
+                romBox.setRom(rom);
+                System.out.println("rom was unset despite valid ROM file in FileMap!");
             } catch (Exception e) {
                 JJWUtils.printException(e, "Couldnt access ROM file despite it existing in the FileMap!");
                 return;
@@ -661,102 +645,95 @@ public class JoJoWriteController implements Initializable {
 
         if (romBox.getArea().getText().isEmpty()) return;
 
-        try {
-            if (address > romRAF.length()) return;
-            romBox.getScrollBar().setValue(address); // Causes displayROMAt(address) via ChangeListener
-            romBox.getArea().selectRange(0, length);
-        } catch (IOException e) {
-            JJWUtils.printException(e, "Something went wrong while reading the ROM files length!");
-        }
+        if (address > rom.length()) return;
+        romBox.getScrollBar().setValue(address); // Causes displayROMAt(address) via ChangeListener
+        romBox.getArea().selectRange(0, length);
     }
 
     /**
      * Clears out any temporary changes to the main {@link ROMBox#getArea()} and displays all in-bounds {@link JoJoWriteController#overwrites}.
      */
     public void refreshOverwrites() {
-        romBox.getArea().restoreOriginal();
         displayROMOverwrites();
     }
 
     /**
-     * Finds a set of bytes in the ROM (extracted from hexStr) at or after offsetAddress, then shows them.
-     * @param hexStr
+     * Finds the first match at or after offsetAddress in the background, then shows it.
+     * @param matcher Compiled via {@link JoJoWriteController#compileSearch(String)} or {@link JoJoWriteController#compileInstructionSearch(String)}
      * @param offsetAddress
+     * @return The running search, or null if no ROM is open.
      */
-    public void findAndDisplayInROM(String hexStr, long offsetAddress) {
-        if (hexStr.length() % 2 == 1) {
-            System.out.println("Uneven digit count in Hex byte string!");
-            return;
-        }
-        byte[] bytes = JJWUtils.hexStringToBytes(hexStr);
-        int hexStrLength = bytes.length;
-        try {
-            int romRAFLength = (int) romRAF.length();
-
-            /*
-             The buffer size:
-             * Must be equal to or larger than 2x the hex strings' length
-             * Must be equal to or smaller than the file length
-             */
-            int bufferSize = 128;
-
-            if (hexStrLength * 4 > bufferSize) {
-                bufferSize = hexStrLength * 4;
-                if (bufferSize > romRAFLength) {
-                    System.out.println("Input bytes length is longer than file!");
-                    return;
-                }
-            }
+    public RomSearch findAndDisplayInROM(RomMatcher matcher, long offsetAddress) {
+        if (rom == null) return null;
 
-            if (bufferSize > romRAFLength) {
-                bufferSize = romRAFLength;
-            }
+        System.out.println("Searching for: " + matcher);
+        System.out.println("At address: " + offsetAddress);
+        return RomSearch.findFirst(rom, matcher, offsetAddress, address -> {
+            if (address != -1) Platform.runLater(() -> showInROM((int) address, matcher.length() * 2));
+        });
+    }
 
-            romRAF.seek(offsetAddress);
-            System.out.println("Searching for: " + hexStr);
-            System.out.println("At address: " + offsetAddress);
-
-            byte[] readBytes = new byte[bufferSize];
-            while (romRAF.read(readBytes) != -1) {
-                long pointer = romRAF.getFilePointer();
-                int matchingBytes = 0;
-                for (int i = 0; i < bufferSize; i++) {
-                    byte readByte = readBytes[i];
-                    // Match sequentially
-                    if (bytes[matchingBytes] == readByte) {
-                        matchingBytes++;
-                        //System.out.println("Match #" + i + ": " + readByte);
-                    } else {
-                        if (bytes[0] == readByte) {
-                            // If mismatched current byte in sequence but found a match for the first byte again
-                            matchingBytes = 1;
-                            //System.out.println("Semi-Mismatch #" + i + ": " + readByte + ", exp. " + bytes[0]);
-                        } else {
-                            // True mismatch
-                            matchingBytes = 0;
-                            //System.out.println("Real Mismatch #" + i + ": " + readByte + ", exp. " + bytes[0]);
-                        }
-                    }
+    /**
+     * Finds up to maxResults matches in the ROM in the background.
+     * Both callbacks run on the FX thread; see {@link RomSearch#findAll} for the order hits arrive in.
+     * @return The running search, or null if no ROM is open.
+     */
+    public RomSearch findAllInROM(RomMatcher matcher, int maxResults, Consumer<long[]> onHits, Runnable onDone) {
+        if (rom == null) return null;
 
-                    if (matchingBytes == hexStrLength) { // Match found
-                        showInROM((int) pointer - bufferSize - hexStrLength + i + 1, hexStrLength * 2);
-                        return;
-                    }
-                }
-                if (pointer != romRAFLength) { // Overlapping buffer positioning (ensure partial matches are found)
-                    romRAF.seek(pointer - hexStrLength - 1);
-                }
-            }
-        } catch (Exception e) {
-            JJWUtils.printException(e, "Failed to find and display " + hexStr + " in ROM!");
+        System.out.println("Searching for all: " + matcher);
+        return RomSearch.findAll(rom, matcher, maxResults,
+                hits -> Platform.runLater(() -> onHits.accept(hits)),
+                () -> Platform.runLater(onDone)
+        );
+    }
+
+    /**
+     * Compiles a pattern of bytes (see {@link MaskedPattern#parse(String)}), using the {@link JoJoWriteController#romIndex} if possible.
+     * @return The matcher, or null if no ROM is open or the pattern is invalid.
+     */
+    public RomMatcher compileSearch(String pattern) {
+        if (rom == null) return null;
+        final MaskedPattern maskedPattern;
+        try {
+            maskedPattern = MaskedPattern.parse(pattern);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return null;
+        }
+        if (maskedPattern.length() > rom.length()) {
+            System.out.println("Input bytes length is longer than file!");
+            return null;
         }
+        final RomMatcher matcher = RomMatcher.of(maskedPattern);
+        return romIndex == null ? matcher : romIndex.matcher(maskedPattern, matcher);
+    }
+
+    /**
+     * Compiles an instruction template such as "JSR @R?" (see {@link Compiler#compileTemplate(String)}) into a matcher of every aligned instruction it describes.
+     * @return The matcher, or null if no ROM is open or no instruction matches the template.
+     */
+    public RomMatcher compileInstructionSearch(String template) {
+        if (rom == null) return null;
+        final List<OpcodePattern> opcodePatterns = Compiler.compileTemplate(template);
+        if (opcodePatterns.isEmpty()) {
+            System.out.println("No instruction matches: " + template);
+            return null;
+        }
+
+        final int[] values = new int[opcodePatterns.size()], masks = new int[opcodePatterns.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = opcodePatterns.get(i).value();
+            masks[i] = opcodePatterns.get(i).mask();
+        }
+        return new OpcodeMatcher(values, masks, template.trim());
     }
 
     /**
      * Displays all Overwrites that reside within the currently rendered {@link ROMBox#getArea()} as text styled with {@link TextStyles#OVERWRITTEN_TEXT}.
      */
     private void displayROMOverwrites() {
-        romBox.displayOverwrites(overwrites);
+        romBox.displayOverwrites(overwrites.getStore());
     }
 
     public void showOverwriteHelp() {
@@ -777,7 +754,8 @@ public class JoJoWriteController implements Initializable {
                         It is also possible to select a segment of a temporary overwrite to extract, requiring at least two characters to be selected.
                         
                         When placed inside a .overwrite file, they take the form of:
-                        [ADDRESS];[DATA];[COMMENT]"""
+                        [ADDRESS];[DATA];[COMMENT]
+                        Large overwrite files open much faster when saved with Overwrite > Save in Binary Format, which any .overwrite file may use."""
         );
         dialog.initStyle(StageStyle.UNDECORATED);
         dialog.getDialogPane().getStyleClass().add("help-dialog");
@@ -810,11 +788,24 @@ public class JoJoWriteController implements Initializable {
         return openType;
     }
 
-    public void clearOutput() {
-        output.clear();
+    /**
+     * Replaces a range of whole lines in the {@link JoJoWriteController#output}.
+     * @param firstLine Index of the first line to replace.
+     * @param lineCount Amount of lines to replace, may be 0 to insert.
+     * @param text Replacement lines, each terminated by a line break.
+     */
+    public void replaceOutputLines(int firstLine, int lineCount, String text) {
+        final int start = output.getAbsolutePosition(firstLine, 0);
+        final int end = output.getAbsolutePosition(firstLine + lineCount, 0);
+        if (start == end && text.isEmpty()) return;
+        output.replace(start, end, text, BASIC_TEXT);
     }
 
-    public void appendToOutput(String s) {
-        output.append(s, BASIC_TEXT);
+    /**
+     * Replaces the characters of the error area between start and end with text, leaving the rest of it untouched.
+     */
+    public void replaceErrorText(int start, int end, String text) {
+        if (start == end && text.isEmpty()) return;
+        errorArea.replaceText(start, end, text);
     }
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package net.arna.jojowrite;
+
+import net.arna.jojowrite.asm.Compiler;
+import net.arna.jojowrite.patch.PatchFile;
+import net.arna.jojowrite.patch.Patcher;
+
+import java.io.File;
+
+/**
+ * Applies a .patch file without launching the UI, so patched ROMs can be regenerated from scripts.
+ * Usage: PatchLauncher PATCH_FILE [OUTPUT_ROM]
+ * The output ROM defaults to the one listed in the patch file.
+ */
+public class PatchLauncher {
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: PatchLauncher <file" + JJWUtils.PATCH_FILE_EXTENSION + "> [output ROM]");
+            System.exit(2);
+        }
+
+        final long start = System.nanoTime();
+        try {
+            final PatchFile patchFile = PatchFile.read(new File(args[0]));
+            final File outROM = args.length > 1 ? new File(args[1]) : patchFile.outROM();
+            if (outROM == null) {
+                System.err.println("No output ROM specified in " + args[0] + " or as an argument.");
+                System.exit(2);
+            }
+
+            Compiler.loadAssemblyDefinitions(PatchLauncher.class.getResourceAsStream("asmdef.txt"));
+            final Patcher.Result result = Patcher.patch(patchFile, outROM);
+
+            System.out.println("Wrote " + result.bytesWritten() + " patched bytes to " + outROM +
+                    " (" + result.romLength() + " bytes total) in " + (System.nanoTime() - start) / 1_000_000 + "ms.");
+        } catch (Exception e) {
+            JJWUtils.printException(e, "Patching failed.");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package net.arna.jojowrite.asm;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Compiles whole x16 RISC Assembly files (or large parts of them) in one batch.
+ * Every line compiles independently of the others (labels are absolute addresses), so the lines are split into chunks
+ * which are compiled via {@link Compiler#compileLine(String)} on the common {@link ForkJoinPool}.
+ */
+public final class Assembler {
+    /**
+     * Chunks of at most this many lines are compiled sequentially instead of being split further.
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    private Assembler() {}
+
+    /**
+     * Compiles every line, in parallel if there are enough of them.
+     * @param lines The lines to compile, should support fast random access.
+     * @return The compiled lines, indexed by their line number within lines.
+     */
+    public static CompiledLine[] assemble(List<String> lines) {
+        return assemble(lines, 0);
+    }
+
+    /**
+     * @param firstLine The line index of the first line, so {@link Diagnostic#line()} refers to the entire file when compiling part of it.
+     * @see Assembler#assemble(List)
+     */
+    public static CompiledLine[] assemble(List<String> lines, int firstLine) {
+        final CompiledLine[] compiled = new CompiledLine[lines.size()];
+        final AssembleTask task = new AssembleTask(lines, firstLine, compiled, 0, lines.size());
+        if (lines.size() <= CHUNK_SIZE || ForkJoinPool.getCommonPoolParallelism() <= 1) {
+            task.compute(); // Not worth handing to the pool
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+        return compiled;
+    }
+
+    /**
+     * Compiles lines [from, to) into the same indices of the result array, splitting the range in half until it fits in a chunk.
+     */
+    @SuppressWarnings("serial") // Only ever run in a ForkJoinPool, never serialized
+    private static final class AssembleTask extends RecursiveAction {
+        private final List<String> lines;
+        private final int firstLine;
+        private final CompiledLine[] compiled;
+        private final int from, to;
+
+        private AssembleTask(List<String> lines, int firstLine, CompiledLine[] compiled, int from, int to) {
+            this.lines = lines;
+            this.firstLine = firstLine;
+            this.compiled = compiled;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                for (int i = from; i < to; i++)
+                    compiled[i] = Compiler.compileLine(firstLine + i, lines.get(i));
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(
+                    new AssembleTask(lines, firstLine, compiled, from, middle),
+                    new AssembleTask(lines, firstLine, compiled, middle, to)
+            );
+        }
+    }
+}
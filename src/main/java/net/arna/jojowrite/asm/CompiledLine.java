@@ -0,0 +1,29 @@
+package net.arna.jojowrite.asm;
+
+import java.util.List;
+
+/**
+ * The result of compiling a single line of x16 RISC Assembly via {@link Compiler#compileLine(String)}.
+ * @param addressStr The address the line is written to, or null if the line had none.
+ * @param opcode The compiled 16-bit machine code, or {@link Compiler#UNRECOGNIZED_INSTRUCTION}.
+ * @param diagnostics Every error raised while compiling the line, empty if it compiled.
+ * @param hasOutputLine Whether the line contained enough data to try to compile, and therefore occupies a line of output.
+ */
+public record CompiledLine(String addressStr, int opcode, List<Diagnostic> diagnostics, boolean hasOutputLine) {
+    /**
+     * Shared result for empty lines, comments and addresses without an instruction.
+     */
+    public static final CompiledLine NONE = new CompiledLine(null, Compiler.UNRECOGNIZED_INSTRUCTION, List.of(), false);
+
+    public boolean isCompiled() {
+        return opcode != Compiler.UNRECOGNIZED_INSTRUCTION;
+    }
+
+    /**
+     * Appends this lines output in the format of 0xADDRESS, 0xBYTECODE, or nothing if it wasn't compiled.
+     */
+    public StringBuilder appendOutput(StringBuilder out) {
+        if (isCompiled()) out.append("0x").append(addressStr).append(", 0x").append(Compiler.opcodeToHexString(opcode));
+        return out;
+    }
+}
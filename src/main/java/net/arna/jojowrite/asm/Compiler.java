@@ -1,6 +1,5 @@
 package net.arna.jojowrite.asm;
 
-import javafx.scene.control.TextArea;
 import net.arna.jojowrite.JJWUtils;
 import net.arna.jojowrite.asm.instruction.*;
 
@@ -12,83 +11,212 @@ import java.util.stream.Stream;
 
 /**
  * Receives and processes x16 RISC Assembly instructions (usually into machine code).
- * Also covers error logging via {@link Compiler#openErrorLog(int)} and {@link Compiler#raiseError(String)}.
+ * Holds no shared per-compilation state, so lines may be compiled from any thread; errors are returned via {@link CompiledLine#diagnostics()}.
  */
 public class Compiler {
     private static final List<Instruction> instructions = new ArrayList<>();
-    private static final Map<Integer, ArrayList<String>> errors = new HashMap<>();
-    private static ArrayList<String> errorLog;
-    private static TextArea errorOutputArea;
+    /**
+     * Registered instructions keyed by {@link Format#getMnemonic()}, in registration order.
+     * Lets {@link Compiler#getPossibleInstructions(String, String)} skip every Format that can't share a mnemonic with the input.
+     */
+    private static final Map<String, List<Instruction>> mnemonicDispatch = new HashMap<>();
+    /**
+     * Parameterless instructions (NOP, RTS...) match any input that merely starts with their mnemonic, so they're also checked by prefix.
+     */
+    private static final List<Instruction> parameterlessInstructions = new ArrayList<>();
+    /**
+     * Reusable buffer the matcher writes operand nibbles into, one per thread so matching never allocates it.
+     */
+    private static final ThreadLocal<int[]> fragmentNibbleScratch = ThreadLocal.withInitial(() -> new int[4]);
+    /**
+     * Reusable error collector used by {@link Compiler#compileLine(int, String)}, one per thread.
+     */
+    private static final ThreadLocal<Diagnostics> diagnosticsScratch = ThreadLocal.withInitial(Diagnostics::new);
+
+    /**
+     * Returned by {@link Compiler#compile(String, String)} when no instruction matches.
+     */
+    public static final int UNRECOGNIZED_INSTRUCTION = -1;
+
+    public static final String COMMENT_PREFIX = "/";
 
     public static Stream<Instruction> getPossibleInstructions(String addressStr, String instructionStr) {
-        return instructions.stream().filter(
-                instruction -> instruction.getFormat().matches(addressStr, instructionStr)
+        final String mnemonic = getMnemonic(instructionStr);
+
+        return Stream.concat(
+                mnemonicDispatch.getOrDefault(mnemonic, List.of()).stream(),
+                parameterlessInstructions.stream().filter(instruction -> matchesParameterlessPrefix(instruction, mnemonic))
+        ).filter(
+                instruction -> instruction.getFormat().matches(addressStr, instructionStr, fragmentNibbleScratch.get(), null)
         );
     }
 
     /**
-     * Compiles the specified instruction into a String Hex representation of the compiled machine code.
+     * Matches and encodes an instruction in a single pass, trying candidates in the same order as {@link Compiler#getPossibleInstructions(String, String)}.
+     * @return The 16-bit machine code of the first matching instruction, or {@link Compiler#UNRECOGNIZED_INSTRUCTION}.
      */
-    public static String compileToHexString(Instruction instruction, String addressStr, String instructionStr) {
-        return instruction.compileToHexString(instruction.getFormat().mapFragments(addressStr, instructionStr));
+    public static int compile(String addressStr, String instructionStr) {
+        return compile(addressStr, instructionStr, null);
     }
 
     /**
-     * Compiles the specified instruction into a value Hex representation of the compiled machine code.
+     * @param diagnostics Receives the reason every candidate before the matching one failed, may be null.
+     * @see Compiler#compile(String, String)
      */
-    public static byte[] compileToBytes(Instruction instruction, String addressStr, String instructionStr) {
-        return instruction.compileToBytes(instruction.getFormat().mapFragments(addressStr, instructionStr));
+    public static int compile(String addressStr, String instructionStr, Diagnostics diagnostics) {
+        final String mnemonic = getMnemonic(instructionStr);
+        final int[] fragmentNibbles = fragmentNibbleScratch.get();
+
+        for (Instruction instruction : mnemonicDispatch.getOrDefault(mnemonic, List.of())) {
+            if (instruction.getFormat().matches(addressStr, instructionStr, fragmentNibbles, diagnostics))
+                return instruction.encode(fragmentNibbles);
+        }
+        for (Instruction instruction : parameterlessInstructions) {
+            if (matchesParameterlessPrefix(instruction, mnemonic) && instruction.getFormat().matches(addressStr, instructionStr, fragmentNibbles, diagnostics))
+                return instruction.encode(fragmentNibbles);
+        }
+
+        return UNRECOGNIZED_INSTRUCTION;
     }
 
-    public static void registerInstruction(Instruction i) throws IllegalStateException {
-        if (instructions.contains(i))
-            throw new IllegalStateException("Attempted to register the same instruction twice!");
-        instructions.add(i);
+    /**
+     * Compiles a search template into the machine code of every instruction it describes, e.g. "JSR @R?" or "MOV.L @(disp,PC),R1".
+     * Operands may be wildcards (see {@link Part#matchesTemplate(String, int, Format, int[], boolean[])}), and a mnemonic on its own matches every form of it.
+     * @return One pattern per matching instruction, in registration order; empty if none match.
+     */
+    public static List<OpcodePattern> compileTemplate(String template) {
+        template = template.trim();
+        final String mnemonic = getMnemonic(template);
+        final boolean mnemonicOnly = template.equals(mnemonic);
+        final int[] fragmentNibbles = new int[4];
+        final boolean[] wildcardFragments = new boolean[4];
+
+        final List<OpcodePattern> patterns = new ArrayList<>();
+        for (Instruction instruction : mnemonicDispatch.getOrDefault(mnemonic, List.of())) {
+            Arrays.fill(fragmentNibbles, 0);
+            Arrays.fill(wildcardFragments, mnemonicOnly);
+            if (!mnemonicOnly && !instruction.getFormat().matchesTemplate(template, fragmentNibbles, wildcardFragments)) continue;
+
+            final int mask = instruction.getKnownBits(wildcardFragments);
+            patterns.add(new OpcodePattern(instruction, instruction.encode(fragmentNibbles) & mask, mask));
+        }
+        return patterns;
+    }
+
+    /**
+     * Compiles a single line in the format of ADDRESS:INSTRUCTION, validating the address first.
+     * @see Compiler#compileLine(int, String)
+     */
+    public static CompiledLine compileLine(String line) {
+        return compileLine(0, line);
+    }
+
+    /**
+     * Compiles a single line in the format of ADDRESS:INSTRUCTION, validating the address first.
+     * @param lineIndex Index of the line within its file, recorded in any {@link Diagnostic}s.
+     * @return The compiled line, along with every error raised while compiling it.
+     */
+    public static CompiledLine compileLine(int lineIndex, String line) {
+        if (line.isEmpty() || line.startsWith(COMMENT_PREFIX)) return CompiledLine.NONE;
+
+        String[] tokens = line.split(":"); // [06123456:FOO BAR] -> [06123456], [FOO BAR]
+        final String addressStr = tokens[0];
+        if (tokens.length < 2) return CompiledLine.NONE; // Must have address and instruction to begin compiling
+
+        // Ensure valid address format
+        if (addressStr.length() < 8)
+            return addressError(lineIndex, addressStr, Diagnostic.Code.INVALID_ADDRESS_LENGTH, addressStr);
+        try {
+            if (Integer.parseUnsignedInt(addressStr, 16) % 2 != 0)
+                return addressError(lineIndex, addressStr, Diagnostic.Code.UNALIGNED_ADDRESS, addressStr);
+        } catch (NumberFormatException e) {
+            return addressError(lineIndex, addressStr, Diagnostic.Code.INVALID_HEX_CHARACTER, null);
+        }
+
+        final String instructionStr = tokens[1];
+        if (instructionStr.isEmpty()) return CompiledLine.NONE;
+
+        final Diagnostics diagnostics = diagnosticsScratch.get();
+        diagnostics.beginLine(lineIndex, addressStr.length() + 1);
+        final int opcode = compile(addressStr, instructionStr, diagnostics);
+        if (opcode == UNRECOGNIZED_INSTRUCTION) {
+            if (diagnostics.isEmpty()) diagnostics.report(Diagnostic.Code.UNRECOGNIZED_INSTRUCTION, 0, null, instructionStr);
+            return new CompiledLine(addressStr, opcode, diagnostics.takeLine(), true);
+        }
+        // Candidates that failed before the matching one may have raised errors
+        diagnostics.discardLine();
+        return new CompiledLine(addressStr, opcode, List.of(), true);
+    }
+
+    private static CompiledLine addressError(int lineIndex, String addressStr, Diagnostic.Code code, String subject) {
+        return new CompiledLine(addressStr, UNRECOGNIZED_INSTRUCTION, List.of(new Diagnostic(lineIndex, 0, code, null, subject)), false);
+    }
+
+    private static String getMnemonic(String instructionStr) {
+        final int mnemonicEnd = instructionStr.indexOf(' ');
+        return mnemonicEnd == -1 ? instructionStr : instructionStr.substring(0, mnemonicEnd);
     }
 
-    public static void clearErrors() {
-        errors.clear();
-        errorOutputArea.clear();
+    private static boolean matchesParameterlessPrefix(Instruction instruction, String mnemonic) {
+        String parameterlessMnemonic = instruction.getFormat().getMnemonic();
+        // Exact matches are already dispatched via mnemonicDispatch
+        return mnemonic.length() > parameterlessMnemonic.length() && mnemonic.startsWith(parameterlessMnemonic);
     }
 
     /**
-     * Opens a new error log for:
-     * @param index
+     * Compiles the specified instruction into a String Hex representation of the compiled machine code.
      */
-    public static void openErrorLog(int index) {
-        errorLog = new ArrayList<>();
-        errors.put(index, errorLog);
+    public static String compileToHexString(Instruction instruction, String addressStr, String instructionStr) {
+        return opcodeToHexString(encode(instruction, addressStr, instructionStr));
     }
 
     /**
-     * Gets whether the error log has any entries.
+     * Compiles the specified instruction into a value Hex representation of the compiled machine code.
      */
-    public static boolean noLoggedErrors() {
-        return errorLog.isEmpty();
+    public static byte[] compileToBytes(Instruction instruction, String addressStr, String instructionStr) {
+        return opcodeToBytes(encode(instruction, addressStr, instructionStr));
+    }
+
+    private static int encode(Instruction instruction, String addressStr, String instructionStr) {
+        int[] fragmentNibbles = fragmentNibbleScratch.get();
+        if (!instruction.getFormat().matches(addressStr, instructionStr, fragmentNibbles, null))
+            throw new IllegalStateException("Trying to compile non-matching instruction!");
+        return instruction.encode(fragmentNibbles);
     }
 
     /**
-     * Appends a new error to the error log.
+     * @return The 16-bit machine code as 4 lowercase hex digits.
      */
-    public static void raiseError(String err) {
-        if (errorLog == null) return;
-        errorLog.add(err);
+    public static String opcodeToHexString(int opcode) {
+        char[] out = new char[4];
+        for (int i = 0; i < 4; i++)
+            out[i] = JJWUtils.HEX_DIGITS.charAt((opcode >> ((3 - i) * 4)) & 0xF);
+        return new String(out);
     }
 
-    public static void clearErrors(int index) {
-        errors.remove(index);
+    /**
+     * @return The 16-bit machine code as 2 big-endian bytes.
+     */
+    public static byte[] opcodeToBytes(int opcode) {
+        return new byte[] { (byte) (opcode >> 8), (byte) opcode };
     }
 
-    public static void displayErrors() {
-        errors.forEach(
-                (key, value) -> value.forEach(
-                        error -> errorOutputArea.appendText("Ln. " + (key + 1) + ": " + error + '\n')
-                )
-        );
+    public static void registerInstruction(Instruction i) throws IllegalStateException {
+        if (instructions.contains(i))
+            throw new IllegalStateException("Attempted to register the same instruction twice!");
+        instructions.add(i);
+
+        Format format = i.getFormat();
+        mnemonicDispatch.computeIfAbsent(format.getMnemonic(), mnemonic -> new ArrayList<>()).add(i);
+        if (format.isParameterless()) parameterlessInstructions.add(i);
+        Disassembler.invalidate();
     }
 
-    public static void setErrorOutputArea(TextArea errorOutputArea) {
-        Compiler.errorOutputArea = errorOutputArea;
+    /**
+     * @return Every registered instruction, in registration order.
+     */
+    public static List<Instruction> getInstructions() {
+        return Collections.unmodifiableList(instructions);
     }
 
     static class Keyword {
@@ -204,10 +332,10 @@ public class Compiler {
             String fragmentStr = fragmentsStr.substring(i, i + 4);
             try { // Valid binary fragment
                 byte fragmentValue = Integer.valueOf(fragmentStr, 2).byteValue();
-                fragments[i / 4] = (Fragment.StaticFragment(fragmentValue));
+                fragments[i / 4] = (Fragment.StaticFragment(fragmentValue, i / 4));
             } catch (NumberFormatException e) { // Parameterized fragment
                 char identifier = fragmentStr.charAt(0);
-                fragments[i / 4] = (Fragment.VariableFragment(identifier));
+                fragments[i / 4] = (Fragment.VariableFragment(identifier, i / 4));
             }
         }
         return fragments;
@@ -0,0 +1,62 @@
+package net.arna.jojowrite.asm;
+
+import net.arna.jojowrite.asm.instruction.Format;
+
+/**
+ * A single error raised while compiling a line, see {@link Diagnostics}.
+ * Only holds references to data that already exists; the message is built on demand via {@link Diagnostic#getMessage()}.
+ * @param line Index of the line the error was raised on, as passed to {@link Compiler#compileLine(int, String)}.
+ * @param column Zero-based index of the character within the line at which the error was detected.
+ * @param code The kind of error.
+ * @param format The candidate {@link Format} that failed to match, or null if the error concerns the line as a whole.
+ * @param subject The piece of input the message refers to (such as the address), or null.
+ */
+public record Diagnostic(int line, int column, Code code, Format format, String subject) {
+    public enum Code {
+        INVALID_ADDRESS_LENGTH("Invalid address length: "),
+        UNALIGNED_ADDRESS("Unaligned address: "),
+        UNRECOGNIZED_INSTRUCTION("Unrecognized instruction: "),
+        INVALID_HEX_CHARACTER("Invalid character in Hex literal"),
+        INVALID_DECIMAL_CHARACTER("Invalid character in Decimal literal"),
+        BACKWARD_BRANCH("Non-referential branching instruction cannot jump back"),
+        BRANCH_TOO_FAR("Cannot jump that far"),
+        UNALIGNED_BRANCH("Cannot branch to unaligned address"),
+        INVALID_POINTER("Invalid pointer"),
+        /**
+         * Followed by the modifier of the {@link Format}s {@link net.arna.jojowrite.asm.instruction.DisplacementMutation}.
+         */
+        UNALIGNED_DISPLACEMENT("Invalid displacement, should be a multiple of "),
+        DISPLACEMENT_TOO_LARGE("Displacement value too large"),
+        INVALID_DISPLACEMENT_LENGTH("Incorrect displacement length"),
+        INVALID_IMMEDIATE_LENGTH("Incorrect immediate value length"),
+        MISSING_IMMEDIATE_PREFIX("Expected $ at start of immediate value"),
+        MISSING_REGISTER_INDEX("Expected decimal index after registry specifier"),
+        INVALID_REGISTER("Invalid Register ID");
+
+        private final String message;
+
+        Code(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * @return The human-readable description of this error, e.g. "Invalid pointer - format: BRA label".
+     */
+    public String getMessage() {
+        final StringBuilder out = new StringBuilder(code.getMessage());
+        if (code == Code.UNALIGNED_DISPLACEMENT) out.append(format.getDispMutation().getModifier());
+        if (subject != null) out.append(subject);
+        if (format != null) out.append(" - format: ").append(format);
+        return out.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+}
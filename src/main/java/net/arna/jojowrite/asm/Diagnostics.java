@@ -0,0 +1,78 @@
+package net.arna.jojowrite.asm;
+
+import net.arna.jojowrite.asm.instruction.Format;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collects the errors raised while compiling one line at a time.
+ * Most candidate {@link Format}s fail harmlessly before the matching one is found, so reporting an error only stores
+ * its code, column and Format; {@link Diagnostic}s are created once the line turns out to have failed.
+ * <p>
+ * Not thread-safe, every compiling thread uses its own instance.
+ */
+public final class Diagnostics {
+    private Diagnostic.Code[] codes = new Diagnostic.Code[8];
+    private int[] columns = new int[8];
+    private Format[] formats = new Format[8];
+    private String[] subjects = new String[8];
+    private int size = 0;
+
+    private int line = 0, columnOffset = 0;
+
+    /**
+     * Discards anything pending and starts collecting errors for a new line.
+     * @param columnOffset Added to every reported column, as errors are reported relative to the instruction.
+     */
+    public void beginLine(int line, int columnOffset) {
+        this.line = line;
+        this.columnOffset = columnOffset;
+        discardLine();
+    }
+
+    public void report(Diagnostic.Code code, int column, Format format) {
+        report(code, column, format, null);
+    }
+
+    public void report(Diagnostic.Code code, int column, Format format, String subject) {
+        if (size == codes.length) {
+            final int capacity = size * 2;
+            codes = Arrays.copyOf(codes, capacity);
+            columns = Arrays.copyOf(columns, capacity);
+            formats = Arrays.copyOf(formats, capacity);
+            subjects = Arrays.copyOf(subjects, capacity);
+        }
+        codes[size] = code;
+        columns[size] = columnOffset + column;
+        formats[size] = format;
+        subjects[size] = subject;
+        size++;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Forgets the errors of the current line, for when it compiled after all.
+     */
+    public void discardLine() {
+        Arrays.fill(formats, 0, size, null);
+        Arrays.fill(subjects, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * @return Every error reported for the current line, after which they are discarded.
+     */
+    public List<Diagnostic> takeLine() {
+        if (size == 0) return List.of();
+        final List<Diagnostic> diagnostics = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            diagnostics.add(new Diagnostic(line, columns[i], codes[i], formats[i], subjects[i]));
+        discardLine();
+        return List.copyOf(diagnostics);
+    }
+}
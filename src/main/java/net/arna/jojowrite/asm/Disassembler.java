@@ -0,0 +1,119 @@
+package net.arna.jojowrite.asm;
+
+import net.arna.jojowrite.asm.instruction.Instruction;
+
+import java.util.List;
+
+/**
+ * Turns x16 RISC machine code back into Assembly, in the ADDRESS:INSTRUCTION format read by {@link Compiler#compileLine(String)}.
+ * Decodes via a table of all 65536 opcodes, derived from the instructions registered with the {@link Compiler}.
+ * <p>
+ * Branch targets are decoded as signed displacements like the CPU does, so backward branches disassemble to addresses
+ * that {@link Compiler} (which only assembles forward branches) rejects.
+ */
+public final class Disassembler {
+    private static final int OPCODE_COUNT = 0x10000;
+    /**
+     * Lines of opcodes no instruction decodes to are commented out.
+     */
+    public static final String UNKNOWN_PREFIX = Compiler.COMMENT_PREFIX;
+
+    /**
+     * The decoded instruction of every opcode, or null if none matches. Rebuilt on first use after an instruction is registered.
+     */
+    private static volatile Instruction[] decodeTable = null;
+
+    private static final String UPPERCASE_HEX_DIGITS = "0123456789ABCDEF";
+    /**
+     * Roughly the length of an average line, used to size output buffers.
+     */
+    private static final int AVERAGE_LINE_LENGTH = 24;
+
+    private Disassembler() {}
+
+    static void invalidate() {
+        decodeTable = null;
+    }
+
+    private static Instruction[] getDecodeTable() {
+        Instruction[] table = decodeTable;
+        if (table == null) {
+            synchronized (Disassembler.class) {
+                table = decodeTable;
+                if (table == null) decodeTable = table = buildDecodeTable(Compiler.getInstructions());
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Enumerates every value of each instructions VARIABLE bits.
+     * Instructions registered earlier win overlapping opcodes, the same order {@link Compiler#compile(String, String)} tries them in.
+     */
+    private static Instruction[] buildDecodeTable(List<Instruction> instructions) {
+        final Instruction[] table = new Instruction[OPCODE_COUNT];
+        for (Instruction instruction : instructions) {
+            final int staticBits = instruction.getStaticBits(), variableMask = ~instruction.getStaticMask() & 0xFFFF;
+            // Counts through every subset of variableMask
+            int variableBits = 0;
+            do {
+                final int opcode = staticBits | variableBits;
+                if (table[opcode] == null) table[opcode] = instruction;
+                variableBits = (variableBits - variableMask) & variableMask;
+            } while (variableBits != 0);
+        }
+        return table;
+    }
+
+    /**
+     * @return The instruction opcode decodes to, or null if it is unknown.
+     */
+    public static Instruction decode(int opcode) {
+        return getDecodeTable()[opcode & 0xFFFF];
+    }
+
+    /**
+     * @return The instruction text of opcode (e.g. "MOV #$0C,R4"), or null if it is unknown.
+     */
+    public static String disassemble(int address, int opcode) {
+        final Instruction instruction = decode(opcode);
+        if (instruction == null) return null;
+        final StringBuilder out = new StringBuilder(AVERAGE_LINE_LENGTH);
+        instruction.getFormat().disassemble(opcode & 0xFFFF, address, out);
+        return out.toString();
+    }
+
+    /**
+     * Appends a line in the format of ADDRESS:INSTRUCTION, without a line break.
+     * Unknown opcodes are written as a comment holding their machine code, e.g. "/06280000:FFFF".
+     */
+    public static void appendLine(int address, int opcode, StringBuilder out) {
+        final Instruction instruction = decode(opcode);
+        if (instruction == null) out.append(UNKNOWN_PREFIX);
+        appendHex(out, address, 8);
+        out.append(':');
+        if (instruction == null) appendHex(out, opcode, 4);
+        else instruction.getFormat().disassemble(opcode & 0xFFFF, address, out);
+    }
+
+    /**
+     * Disassembles big-endian machine code into one line per instruction, each terminated by a line break.
+     * @param code The machine code, a trailing odd byte is ignored.
+     * @param baseAddress The address of code[0].
+     */
+    public static void disassemble(byte[] code, int baseAddress, StringBuilder out) {
+        out.ensureCapacity(out.length() + code.length / 2 * AVERAGE_LINE_LENGTH);
+        for (int i = 0; i + 1 < code.length; i += 2) {
+            appendLine(baseAddress + i, (code[i] & 0xFF) << 8 | code[i + 1] & 0xFF, out);
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Appends the lowest digits nibbles of value as uppercase hex, the way Assembly is written.
+     */
+    public static void appendHex(StringBuilder out, int value, int digits) {
+        for (int i = digits - 1; i >= 0; i--)
+            out.append(UPPERCASE_HEX_DIGITS.charAt((value >>> (i * 4)) & 0xF));
+    }
+}
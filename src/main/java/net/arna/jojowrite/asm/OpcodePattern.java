@@ -0,0 +1,15 @@
+package net.arna.jojowrite.asm;
+
+import net.arna.jojowrite.asm.instruction.Instruction;
+
+/**
+ * The machine code of an {@link Instruction} whose operands may be partially unknown, as compiled by {@link Compiler#compileTemplate(String)}.
+ * An opcode matches if (opcode & mask) == value.
+ * @param value The known bits of the machine code, every other bit cleared.
+ * @param mask Which bits of the machine code are known.
+ */
+public record OpcodePattern(Instruction instruction, int value, int mask) {
+    public boolean matches(int opcode) {
+        return (opcode & mask) == value;
+    }
+}
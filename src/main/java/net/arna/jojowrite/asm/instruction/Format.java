@@ -1,8 +1,8 @@
 package net.arna.jojowrite.asm.instruction;
 
+import net.arna.jojowrite.asm.Diagnostics;
+
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Wrapper for a Collection that represents individual {@link Part}s of an Assembly {@link Instruction}, in the order they appear.
@@ -11,55 +11,59 @@ public class Format {
     private DisplacementMutation dispMutation = DisplacementMutation.NONE;
     //private final int variableParts;
     private final Collection<Part> parts;
+    private final String mnemonic;
 
     public Format(Collection<Part> parts) {
         this.parts = parts;
         //variableParts = parts.stream().filter(Part::isVariable).mapToInt(e -> 1).sum();
-    }
 
-    /**
-     * Self-explanatory. Provides the Parts with:
-     * @param format a reference to this Format
-     * @param displacementMutation its DisplacementMutation
-     * @param address the address of the instruction being compiled.
-     */
-    public record CompilationContext(Format format, DisplacementMutation displacementMutation, String address) {}
+        // Every Format starts with a StaticPart, e.g. "MOV.L @(" -> "MOV.L"
+        String leadingSegment = parts.iterator().next().toString();
+        int mnemonicEnd = leadingSegment.indexOf(' ');
+        this.mnemonic = mnemonicEnd == -1 ? leadingSegment : leadingSegment.substring(0, mnemonicEnd);
+    }
 
     /**
+     * Walks instructionStr with a cursor, matching each Part in order.
+     * Operand nibbles are written into fragmentNibbles, indexed by {@link Fragment#getPosition()}.
      * @param addressStr Address of instruction being checked.
      * @param instructionStr Instruction being checked.
+     * @param fragmentNibbles Scratch buffer of at least 4 ints, only meaningful if this returns true.
+     * @param diagnostics Receives the reason the match failed, may be null.
      * @return Whether the instructionStr matches this Format.
      */
-    public boolean matches(String addressStr, String instructionStr) {
-        CompilationContext ctx = new CompilationContext(this, dispMutation, addressStr);
-
+    public boolean matches(String addressStr, String instructionStr, int[] fragmentNibbles, Diagnostics diagnostics) {
+        int cursor = 0;
         for (Part part : parts) {
             // Procedurally consumes the string as the pattern check continues.
-            Part.MatchData matchData = part.matches(instructionStr, ctx);
-            if (!matchData.match()) return false;
-            instructionStr = matchData.remaining();
+            cursor = part.matches(instructionStr, cursor, this, addressStr, fragmentNibbles, diagnostics);
+            if (cursor == Part.NO_MATCH) return false;
         }
         return true;
     }
 
     /**
-     * @param addressStr Address of instruction being compiled.
-     * @param instructionStr Instruction being compiled.
-     * @return Whether the instructionStr matches this Format.
+     * Matches a search template such as "MOV.L @(disp,PC),R?" or "JSR @R12", see {@link Part#matchesTemplate(String, int, Format, int[], boolean[])}.
+     * @param fragmentNibbles Receives the operand nibbles given in the template.
+     * @param wildcardFragments Receives true for every fragment the template leaves unknown, must be cleared beforehand.
+     * @return Whether the entire template matches this Format.
      */
-    public Map<Fragment, Character> mapFragments(String addressStr, String instructionStr) {
-        CompilationContext ctx = new CompilationContext(this, dispMutation, addressStr);
-        Map<Fragment, Character> out = new HashMap<>();
-
+    public boolean matchesTemplate(String template, int[] fragmentNibbles, boolean[] wildcardFragments) {
+        int cursor = 0;
         for (Part part : parts) {
-            // Procedurally consumes the string as the pattern check continues.
-            Part.MatchData matchData = part.matches(instructionStr, ctx);
-            if (!matchData.match()) throw new IllegalStateException("Trying to mapFragments for non-matching instruction!");
-            instructionStr = matchData.remaining();
-            matchData.fragmentHexDigitMap().ifPresent(out::putAll);
-            if (instructionStr.isEmpty()) return out;
+            cursor = part.matchesTemplate(template, cursor, this, fragmentNibbles, wildcardFragments);
+            if (cursor == Part.NO_MATCH) return false;
         }
-        return out;
+        return cursor == template.length();
+    }
+
+    /**
+     * Writes opcode as text in this Format, the inverse of {@link Format#matches(String, String, int[], Diagnostics)}.
+     * @param address Address of the instruction, needed to resolve labels.
+     */
+    public void disassemble(int opcode, int address, StringBuilder out) {
+        for (Part part : parts)
+            part.disassemble(opcode, this, address, out);
     }
 
     @Override
@@ -71,6 +75,24 @@ public class Format {
         return out.toString();
     }
 
+    /**
+     * @return The mnemonic this Format starts with, e.g. "MOV.L" for "MOV.L @(disp,PC),Rn".
+     */
+    public String getMnemonic() {
+        return mnemonic;
+    }
+
+    /**
+     * @return Whether this Format consists of nothing but its mnemonic, such as NOP or RTS.
+     */
+    public boolean isParameterless() {
+        return parts.size() == 1 && !parts.iterator().next().isVariable();
+    }
+
+    public DisplacementMutation getDispMutation() {
+        return dispMutation;
+    }
+
     public void setDispMutation(DisplacementMutation dispMutation) {
         this.dispMutation = dispMutation;
     }
@@ -9,18 +9,20 @@ public class Fragment {
     private final FragmentType type;
     private final Byte value;
     private final Character identifier;
-    protected Fragment(FragmentType type, Byte value, Character identifier) {
+    private final int position;
+    protected Fragment(FragmentType type, Byte value, Character identifier, int position) {
         this.type = type;
         this.value = value;
         this.identifier = identifier;
+        this.position = position;
     }
 
-    public static Fragment StaticFragment(byte value) {
-        return new Fragment(FragmentType.STATIC, value, null);
+    public static Fragment StaticFragment(byte value, int position) {
+        return new Fragment(FragmentType.STATIC, value, null, position);
     }
 
-    public static Fragment VariableFragment(char identifier) {
-        return new Fragment(FragmentType.VARIABLE, null, identifier);
+    public static Fragment VariableFragment(char identifier, int position) {
+        return new Fragment(FragmentType.VARIABLE, null, identifier, position);
     }
 
     public FragmentType getType() {
@@ -40,6 +42,13 @@ public class Fragment {
         return value;
     }
 
+    /**
+     * @return The index of this Fragment within its {@link Instruction}, 0 being the most significant nibble.
+     */
+    public int getPosition() {
+        return position;
+    }
+
     public String asSingleChar() {
         if (type == FragmentType.STATIC)
             return JJWUtils.HEX_DIGITS.substring(value, value + 1);
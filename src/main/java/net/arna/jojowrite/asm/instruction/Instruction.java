@@ -5,15 +5,20 @@ import java.util.*;
 /**
  * Data structure that describes an Assembly instruction.
  * Every instruction is composed of 4 {@link Fragment}s and a {@link Format}.
- * Compiles into 2 bytes (via {@link Instruction#compileToHexString(Map)}).
+ * Compiles into 2 bytes (via {@link Instruction#encode(int[])}).
  */
 public final class Instruction {
     private final Fragment[] fragments;
     private final Format format;
     private final String comment;
     private final int fragSize;
+    /**
+     * The machine code with every VARIABLE fragment zeroed out.
+     */
+    private final int staticBits;
 
     public Instruction(Fragment[] fragments, Format format, String comment) {
+        int staticBits = 0;
         if (fragments == null) {
             fragSize = 0;
         } else {
@@ -21,7 +26,13 @@ public final class Instruction {
 
             if (fragSize != 4)
                 throw new RuntimeException("Attempted to create an Instruction with an invalid amount of fragments!");
+
+            for (int i = 0; i < fragSize; i++) {
+                if (fragments[i].getType() == Fragment.FragmentType.STATIC)
+                    staticBits |= fragments[i].getValue() << ((fragSize - 1 - i) * 4);
+            }
         }
+        this.staticBits = staticBits;
 
         this.fragments = fragments;
         this.format = format;
@@ -44,67 +55,51 @@ public final class Instruction {
     }
 
     /**
-     * @return Instruction@hash{ format seen in manual -> compiled bytemap }
+     * @param fragmentNibbles Operand nibbles written by {@link Format#matches(String, String, int[])}.
+     * @return The compiled 16-bit machine code.
      */
-    public String compileToHexString(Map<Fragment, Character> fragmentData) {
-        StringBuilder out = new StringBuilder();
-        for (Fragment fragment : fragments) {
-            if (fragment.getType() == Fragment.FragmentType.STATIC) {
-                out.append(fragment.asSingleChar());
-            } else if (fragment.getType() == Fragment.FragmentType.VARIABLE) {
-                out.append(fragmentData.get(fragment));
+    public int encode(int[] fragmentNibbles) {
+        int out = staticBits;
+        for (int i = 0; i < fragSize; i++) {
+            if (fragments[i].getType() == Fragment.FragmentType.VARIABLE) {
+                out |= fragmentNibbles[i] << ((fragSize - 1 - i) * 4);
             }
         }
-        return out.toString();
+        return out;
     }
 
-    // Yeah, I COULD compute this concisely, but I don't feel like it and hex digits won't be changing any time soon.
-    private static final Map<Character, Byte> characterValueMap = new HashMap<>(
-            Map.ofEntries(
-                    Map.entry('0', (byte)0),
-                    Map.entry('1', (byte)1),
-                    Map.entry('2', (byte)2),
-                    Map.entry('3', (byte)3),
-                    Map.entry('4', (byte)4),
-                    Map.entry('5', (byte)5),
-                    Map.entry('6', (byte)6),
-                    Map.entry('7', (byte)7),
-                    Map.entry('8', (byte)8),
-                    Map.entry('9', (byte)9),
-                    Map.entry('A', (byte)0xA),
-                    Map.entry('B', (byte)0xB),
-                    Map.entry('C', (byte)0xC),
-                    Map.entry('D', (byte)0xD),
-                    Map.entry('E', (byte)0xE),
-                    Map.entry('F', (byte)0XF),
-                    Map.entry('a', (byte)0xa),
-                    Map.entry('b', (byte)0xb),
-                    Map.entry('c', (byte)0xc),
-                    Map.entry('d', (byte)0xd),
-                    Map.entry('e', (byte)0xe),
-                    Map.entry('f', (byte)0xf)
-            )
-    );
-    public byte[] compileToBytes(Map<Fragment, Character> fragmentData) {
-        byte[] out = new byte[2];
-        byte[] outRaw = new byte[fragSize];
-
+    /**
+     * @param wildcardFragments Which fragments are unknown, indexed by {@link Fragment#getPosition()}. Only VARIABLE fragments may be unknown.
+     * @return A mask of the machine code bits that are known.
+     */
+    public int getKnownBits(boolean[] wildcardFragments) {
+        int out = 0;
         for (int i = 0; i < fragSize; i++) {
-            Fragment fragment = fragments[i];
-            if (fragment.getType() == Fragment.FragmentType.STATIC) {
-                outRaw[i] = fragment.getValue();
-            } else if (fragment.getType() == Fragment.FragmentType.VARIABLE) {
-                outRaw[i] = characterValueMap.get(fragmentData.get(fragment));
-            }
+            if (fragments[i].getType() == Fragment.FragmentType.STATIC || !wildcardFragments[i])
+                out |= 0xF << ((fragSize - 1 - i) * 4);
         }
+        return out;
+    }
 
-        for (int i = 0; i < fragSize; i += 2) {
-            out[i / 2] = (byte) ((outRaw[i] << 4) + outRaw[i + 1]);
+    /**
+     * @return A mask of the machine code bits set by STATIC fragments.
+     */
+    public int getStaticMask() {
+        int out = 0;
+        for (int i = 0; i < fragSize; i++) {
+            if (fragments[i].getType() == Fragment.FragmentType.STATIC)
+                out |= 0xF << ((fragSize - 1 - i) * 4);
         }
-
         return out;
     }
 
+    /**
+     * @return The machine code with every VARIABLE fragment zeroed out.
+     */
+    public int getStaticBits() {
+        return staticBits;
+    }
+
     public Format getFormat() {
         return format;
     }
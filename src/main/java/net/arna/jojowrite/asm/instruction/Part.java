@@ -1,12 +1,11 @@
 package net.arna.jojowrite.asm.instruction;
 
 import net.arna.jojowrite.JJWUtils;
-import net.arna.jojowrite.asm.Compiler;
+import net.arna.jojowrite.asm.Diagnostic;
+import net.arna.jojowrite.asm.Diagnostics;
+import net.arna.jojowrite.asm.Disassembler;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
 
 /**
  * A segment of an {@link Instruction}s {@link Format}.
@@ -43,7 +42,6 @@ public final class Part {
     private final List<Fragment> fragments;
     private final int fragSize;
     private int dispMax = 0x00;
-    private String dispZeroPadding = null;
 
     private Part(PartType type, String segment, ArgumentType argumentType, List<Fragment> fragments) {
         this.type = type;
@@ -62,7 +60,6 @@ public final class Part {
 
             if (argumentType == ArgumentType.DISPLACEMENT || argumentType == ArgumentType.LABEL) {
                 dispMax = ( 1 << (fragSize * 4) ) - 1;
-                dispZeroPadding = "0".repeat(fragSize);
             }
         }
     }
@@ -102,180 +99,245 @@ public final class Part {
     }
 
     /**
-     * Return type for {@link Part#matches(String, Format.CompilationContext)}.
-     * Holds:
-     * @param match Whether the input strings start matches this Part.
-     * @param remaining The unprocessed remains of the input string.
-     * @param fragmentHexDigitMap A map of which fragments within the greater {@link Instruction} to assign upon compilation.
+     * Returned by {@link Part#matches(String, int, Format, String, int[], Diagnostics)} when the input doesn't match this Part.
      */
-    public record MatchData(boolean match, String remaining, Optional<Map<Fragment, Character>> fragmentHexDigitMap) {}
+    public static final int NO_MATCH = -1;
 
     /**
      * The main method which drives compilation.
-     * Receives a string, and determines whether the start of it matches this Part.
+     * Receives a string and a cursor into it, and determines whether the string matches this Part starting at the cursor.
+     * Operand nibbles are written into fragmentNibbles at the {@link Fragment#getPosition()} of the fragments this Part refers to.
+     * @return The index right after the consumed characters, or {@link Part#NO_MATCH}.
      */
-    public MatchData matches(String in, Format.CompilationContext context) {
+    public int matches(String in, int cursor, Format format, String addressStr, int[] fragmentNibbles, Diagnostics diagnostics) {
         if (type == PartType.STATIC) {
-            if (in.startsWith(segment)) {
-                return new MatchData(true, in.substring(segment.length()), Optional.empty());
-            }  //else return raiseCompilerError(format, "Invalid instruction, expected: " + segment);
+            if (in.startsWith(segment, cursor)) {
+                return cursor + segment.length();
+            }  //else return raiseCompilerError(diagnostics, "Invalid instruction, expected: " + segment);
         }
 
         if (type == PartType.VARIABLE) {
-            Format format = context.format();
-            Map<Fragment, Character> out = new HashMap<>();
-            
             switch (argumentType) {
                 case LABEL -> {
-                    if (in.startsWith("$")) { in = in.substring(1); } // Optional $ at start of label
+                    if (in.startsWith("$", cursor)) { cursor++; } // Optional $ at start of label
 
-                    if (in.length() == 8) {
+                    if (in.length() - cursor == 8) {
                         try {
-                            int pointerAddress = Integer.valueOf(in, 16);
+                            int pointerAddress = Integer.parseInt(in, cursor, in.length(), 16);
                             // + 4 is a forced offset due to it being impractical to jump to the direct next instruction
-                            int instructionAddress = Integer.valueOf(context.address(), 16) + 4;
+                            int instructionAddress = Integer.parseInt(addressStr, 16) + 4;
                             if (instructionAddress > pointerAddress) {
-                                return raiseCompilerError(format, "Non-referential branching instruction cannot jump back");
+                                return raiseCompilerError(diagnostics, Diagnostic.Code.BACKWARD_BRANCH, cursor, format);
                             } else {
                                 if (pointerAddress % 2 == 0) {
                                     // Convert absolute address to valid relative offset
                                     int offset = pointerAddress - instructionAddress;
-                                    offset /= context.displacementMutation().getModifier();
+                                    offset /= format.getDispMutation().getModifier();
                                     if (offset > dispMax) {
-                                        return raiseCompilerError(format, "Cannot jump that far");
+                                        return raiseCompilerError(diagnostics, Diagnostic.Code.BRANCH_TOO_FAR, cursor, format);
                                     }
-                                    String offsetStr = Integer.toString(offset, 16);
-                                    offsetStr = (dispZeroPadding + offsetStr).substring(offsetStr.length());
-                                    for (int i = 0; i < fragSize; i++) {
-                                        out.put(fragments.get(i), offsetStr.charAt(i));
-                                    }
-                                    return new MatchData(true, "", Optional.of(out));
+                                    writeNibbles(offset, fragmentNibbles);
+                                    return in.length();
                                 } else {
-                                    return raiseCompilerError(format, "Cannot branch to unaligned address");
+                                    return raiseCompilerError(diagnostics, Diagnostic.Code.UNALIGNED_BRANCH, cursor, format);
                                 }
                             }
                         } catch (NumberFormatException e) {
-                            return raiseCompilerError(format, "Invalid character in Hex literal");
+                            return raiseCompilerError(diagnostics, Diagnostic.Code.INVALID_HEX_CHARACTER, cursor, format);
                         }
                     } else {
-                        return raiseCompilerError(format, "Invalid pointer");
+                        return raiseCompilerError(diagnostics, Diagnostic.Code.INVALID_POINTER, cursor, format);
                     }
                 }
 
                 case DISPLACEMENT -> { // 1 or 2 bytes
-                    if (in.startsWith("$")) { in = in.substring(1); } // Optional $ at start of displacement
+                    if (in.startsWith("$", cursor)) { cursor++; } // Optional $ at start of displacement
 
-                    DisplacementMutation dispMutation = context.displacementMutation();
+                    DisplacementMutation dispMutation = format.getDispMutation();
+                    final int remaining = in.length() - cursor;
 
                     if (dispMutation == DisplacementMutation.NONE) { // Guaranteed 1 byte due to instruction length limitations
-                        if (in.length() >= fragSize) { // "8F" in $8F
+                        if (remaining >= fragSize) { // "8F" in $8F
                             for (int i = 0; i < fragSize; i++) {
-                                char digit = in.charAt(i);
+                                char digit = in.charAt(cursor + i);
                                 if (JJWUtils.isHexadecimal(digit)) {
-                                    out.put(fragments.get(i), digit);
+                                    fragmentNibbles[fragments.get(i).getPosition()] = Character.digit(digit, 16);
                                 } else {
-                                    return raiseCompilerError(format, "Invalid character in Hex literal");
+                                    return raiseCompilerError(diagnostics, Diagnostic.Code.INVALID_HEX_CHARACTER, cursor, format);
                                 }
                             }
-                            return new MatchData(true, in.substring(fragSize), Optional.of(out));
+                            return cursor + fragSize;
                         }
                     } else {
-                        if (in.length() >= fragSize * 2) { // Possibly 2 bytes
-                            String displacementStr = "";
-                            for (int i = 0; i < fragSize; i++) {
-                                String byteStr = in.substring(i * 2, i * 2 + 2);
-                                if (JJWUtils.isHexadecimal(byteStr)) {
-                                    displacementStr += byteStr;
+                        final int digitCount = fragSize * 2;
+                        if (remaining >= digitCount) { // Possibly 2 bytes
+                            int dispValue = 0;
+                            for (int i = 0; i < digitCount; i++) {
+                                char digit = in.charAt(cursor + i);
+                                if (JJWUtils.isHexadecimal(digit)) {
+                                    dispValue = (dispValue << 4) | Character.digit(digit, 16);
                                 } else {
-                                    return raiseCompilerError(format, "Invalid character in Hex literal");
+                                    return raiseCompilerError(diagnostics, Diagnostic.Code.INVALID_HEX_CHARACTER, cursor, format);
                                 }
                             }
 
-                            int dispValue = Integer.valueOf(displacementStr, 16);
                             if (dispValue % dispMutation.getModifier() != 0) {
-                                return raiseCompilerError(format, "Invalid displacement, should be a multiple of " + dispMutation.getModifier());
+                                return raiseCompilerError(diagnostics, Diagnostic.Code.UNALIGNED_DISPLACEMENT, cursor, format);
                             }
 
                             // Account for memory alignment
                             dispValue /= dispMutation.getModifier();
                             if (dispValue > dispMax) {
-                                return raiseCompilerError(format, "Displacement value too large");
+                                return raiseCompilerError(diagnostics, Diagnostic.Code.DISPLACEMENT_TOO_LARGE, cursor, format);
                             }
 
-                            // Append leading zeros
-                            String displacementValueStr = Integer.toString(dispValue, 16);
-                            if (fragSize > 1) {
-                                displacementValueStr = (dispZeroPadding + displacementValueStr).substring(displacementValueStr.length());
-                            }
-
-                            for (int i = 0; i < fragSize; i++) {
-                                out.put(fragments.get(i), displacementValueStr.charAt(i));
-                            }
-
-                            return new MatchData(true, in.substring(fragSize * 2), Optional.of(out));
+                            writeNibbles(dispValue, fragmentNibbles);
+                            return cursor + digitCount;
                         } else {
-                            return raiseCompilerError(format, "Incorrect displacement length");
+                            return raiseCompilerError(diagnostics, Diagnostic.Code.INVALID_DISPLACEMENT_LENGTH, cursor, format);
                         }
                     }
                 }
 
                 case IMMEDIATE -> { // Always 1 byte long
-                    if (in.startsWith("$")) { // "$" in $8F
-                        if (in.length() > fragSize) { // "8F" in $8F
+                    if (in.startsWith("$", cursor)) { // "$" in $8F
+                        if (in.length() - cursor > fragSize) { // "8F" in $8F
                             for (int i = 0; i < fragSize; i++) {
-                                char digit = in.charAt(i + 1);
+                                char digit = in.charAt(cursor + 1 + i);
                                 if (JJWUtils.isHexadecimal(digit)) {
-                                    out.put(fragments.get(i), digit);
+                                    fragmentNibbles[fragments.get(i).getPosition()] = Character.digit(digit, 16);
                                 } else {
-                                    return raiseCompilerError(format, "Invalid character in Hex literal");
+                                    return raiseCompilerError(diagnostics, Diagnostic.Code.INVALID_HEX_CHARACTER, cursor, format);
                                 }
                             }
-                            return new MatchData(true, in.substring(1 + fragSize), Optional.of(out));
+                            return cursor + 1 + fragSize;
                         } else {
-                            return raiseCompilerError(format, "Incorrect immediate value length");
+                            return raiseCompilerError(diagnostics, Diagnostic.Code.INVALID_IMMEDIATE_LENGTH, cursor, format);
                         }
                     } else {
-                        return raiseCompilerError(format, "Expected $ at start of immediate value");
+                        return raiseCompilerError(diagnostics, Diagnostic.Code.MISSING_IMMEDIATE_PREFIX, cursor, format);
                     }
                 }
 
                 case REGISTER -> {
-                    if (in.length() > 1) {
-                        if (in.startsWith("R")) { // "R" in R0
+                    final int remaining = in.length() - cursor;
+                    if (remaining > 1) {
+                        if (in.startsWith("R", cursor)) { // "R" in R0
+                            // Digits are checked directly, as parsing would also accept a sign (R-1, R+1)
+                            final char firstDigit = in.charAt(cursor + 1);
+                            if (firstDigit < '0' || firstDigit > '9') {
+                                return raiseCompilerError(diagnostics, Diagnostic.Code.INVALID_REGISTER, cursor, format);
+                            }
+                            int registerId = firstDigit - '0';
                             int cutoff = 2;
-                            String registerNumber = in.substring(1, cutoff);
-                            try {
-                                if (in.length() > 2) { // Detect second decimal digit
-                                    String nextCharacter = in.substring(2, 3);
-                                    if (JJWUtils.isDecimal(nextCharacter)) {
-                                        registerNumber += nextCharacter;
-                                        cutoff++;
-                                    }
-                                } else {
-                                    raiseCompilerError(format, "Expected decimal index after registry specifier");
+                            if (remaining > 2) { // Detect second decimal digit
+                                char nextCharacter = in.charAt(cursor + 2);
+                                if (nextCharacter >= '0' && nextCharacter <= '9') {
+                                    registerId = registerId * 10 + nextCharacter - '0';
+                                    cutoff++;
                                 }
-                                int registerId = Integer.valueOf(registerNumber, 10);
-                                if (registerId > 0x0F) {
-                                    return raiseCompilerError(format, "Invalid Register ID");
-                                }
-                                out.put(fragments.get(0), JJWUtils.HEX_DIGITS.charAt(registerId));
-                                return new MatchData(true, in.substring(cutoff), Optional.of(out));
-                            } catch (NumberFormatException e) {
-                                return raiseCompilerError(format, "Invalid character in Decimal literal");
+                            } else {
+                                raiseCompilerError(diagnostics, Diagnostic.Code.MISSING_REGISTER_INDEX, cursor, format);
+                            }
+                            if (registerId > 0x0F) {
+                                return raiseCompilerError(diagnostics, Diagnostic.Code.INVALID_REGISTER, cursor, format);
                             }
-                        } //else return raiseCompilerError(format, "Expected R at start of register reference");
+                            fragmentNibbles[fragments.get(0).getPosition()] = registerId;
+                            return cursor + cutoff;
+                        } //else return raiseCompilerError(diagnostics, "Expected R at start of register reference");
                     }
                 }
             }
         }
 
-        return fail;
+        return NO_MATCH;
+    }
+
+    /**
+     * Matches a search template rather than an instruction, see {@link Format#matchesTemplate(String, int[], boolean[])}.
+     * Besides concrete operands, accepts wildcards: "?" (optionally "$?"), "R?" for registers, or the operand as written in asmdef.txt (e.g. "disp", "Rn").
+     * Labels are relative to the address of the instruction, so they can only be wildcards.
+     * @param wildcardFragments Receives true at the {@link Fragment#getPosition()} of every fragment this Part leaves unknown.
+     * @return The index right after the consumed characters, or {@link Part#NO_MATCH}.
+     */
+    public int matchesTemplate(String in, int cursor, Format format, int[] fragmentNibbles, boolean[] wildcardFragments) {
+        if (type == PartType.STATIC)
+            return in.startsWith(segment, cursor) ? cursor + segment.length() : NO_MATCH;
+
+        final int wildcardEnd = matchWildcard(in, cursor);
+        if (wildcardEnd != NO_MATCH) {
+            for (Fragment fragment : fragments)
+                wildcardFragments[fragment.getPosition()] = true;
+            return wildcardEnd;
+        }
+        if (argumentType == ArgumentType.LABEL) return NO_MATCH;
+        return matches(in, cursor, format, null, fragmentNibbles, null);
     }
 
-    private static final MatchData fail = new MatchData(false, null, null);
-    public MatchData raiseCompilerError(Format format, String error) {
-        Compiler.raiseError(error + " - format: " + format);
-        return fail;
+    private int matchWildcard(String in, int cursor) {
+        final String operandName = toString(); // "Rn", "disp", "$imm", "label"
+        if (in.startsWith(operandName, cursor)) return cursor + operandName.length();
+        if (argumentType == ArgumentType.REGISTER)
+            return in.startsWith("R?", cursor) ? cursor + 2 : NO_MATCH;
+
+        if (in.startsWith("$", cursor)) cursor++;
+        if (argumentType == ArgumentType.IMMEDIATE && in.startsWith("imm", cursor)) return cursor + 3;
+        return in.startsWith("?", cursor) ? cursor + 1 : NO_MATCH;
+    }
+
+    /**
+     * Writes this Part of opcode as text, the inverse of {@link Part#matches(String, int, Format, String, int[], Diagnostics)}.
+     * @param address Address of the instruction, labels are written as absolute addresses relative to it.
+     */
+    public void disassemble(int opcode, Format format, int address, StringBuilder out) {
+        if (type == PartType.STATIC) {
+            out.append(segment);
+            return;
+        }
+
+        int value = 0;
+        for (Fragment fragment : fragments)
+            value = (value << 4) | (opcode >> ((3 - fragment.getPosition()) * 4)) & 0xF;
+
+        switch (argumentType) {
+            case LABEL -> {
+                final int bits = fragSize * 4;
+                final int offset = (value << (32 - bits)) >> (32 - bits); // Branch displacements are signed
+                Disassembler.appendHex(out, address + 4 + offset * format.getDispMutation().getModifier(), 8);
+            }
+            case DISPLACEMENT -> {
+                out.append('$');
+                final DisplacementMutation dispMutation = format.getDispMutation();
+                if (dispMutation == DisplacementMutation.NONE) Disassembler.appendHex(out, value, fragSize);
+                else Disassembler.appendHex(out, value * dispMutation.getModifier(), fragSize * 2);
+            }
+            case IMMEDIATE -> {
+                out.append('$');
+                Disassembler.appendHex(out, value, fragSize);
+            }
+            case REGISTER -> out.append('R').append(value);
+        }
+    }
+
+    /**
+     * Splits value into nibbles and writes them into the positions of this Parts fragments, most significant first.
+     */
+    private void writeNibbles(int value, int[] fragmentNibbles) {
+        for (int i = 0; i < fragSize; i++) {
+            int shift = (fragSize - 1 - i) * 4;
+            fragmentNibbles[fragments.get(i).getPosition()] = (value >> shift) & 0xF;
+        }
+    }
+
+    /**
+     * Records an error against the Format being matched, if the caller is collecting errors.
+     * @param diagnostics The collector of the line being compiled, or null to discard the error.
+     * @param column Position within the instruction at which the error was detected.
+     * @return {@link Part#NO_MATCH}
+     */
+    public int raiseCompilerError(Diagnostics diagnostics, Diagnostic.Code code, int column, Format format) {
+        if (diagnostics != null) diagnostics.report(code, column, format);
+        return NO_MATCH;
     }
 
     @Override
@@ -9,16 +9,24 @@ import javafx.scene.input.KeyEvent;
 import net.arna.jojowrite.DialogHelper;
 import net.arna.jojowrite.JJWUtils;
 import net.arna.jojowrite.JoJoWriteController;
+import net.arna.jojowrite.asm.Assembler;
+import net.arna.jojowrite.asm.CompiledLine;
 import net.arna.jojowrite.asm.Compiler;
-import net.arna.jojowrite.asm.instruction.Instruction;
+import net.arna.jojowrite.asm.Diagnostic;
 import org.fxmisc.flowless.Virtualized;
 import org.fxmisc.richtext.CodeArea;
 import org.fxmisc.richtext.LineNumberFactory;
 import org.fxmisc.richtext.StyleClassedTextArea;
+import org.fxmisc.richtext.model.PlainTextChange;
 import org.fxmisc.richtext.model.StyleSpan;
 import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
+import org.fxmisc.richtext.model.TwoDimensional;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static net.arna.jojowrite.TextStyles.*;
 
@@ -32,7 +40,7 @@ import static net.arna.jojowrite.TextStyles.*;
 public class AssemblyArea extends CodeArea {
     /**
      * Maps key characters with a style from {@link net.arna.jojowrite.TextStyles}.
-     * Used in {@link #styleAssemblyParagraph(int, String)}.
+     * Used in {@link #computeParagraphStyle(String)}.
      */
     private final Map<Character, Set<String>> styleMap = new HashMap<>(
             Map.of(
@@ -51,8 +59,52 @@ public class AssemblyArea extends CodeArea {
 
     private static final Set<String> keywordTextStyle = Collections.singleton(KEYWORD_TEXT);
     private static final Set<String> commentTextStyle = Collections.singleton(COMMENT_TEXT);
+    private static final Set<String> addressTextStyle = Collections.singleton(ADDRESS_TEXT);
+    private static final Set<String> basicTextStyle = Collections.singleton(BASIC_TEXT);
+    private static final Set<String> parameterTextStyle = Collections.singleton(PARAMETER_TEXT);
 
-    public static final String COMMENT_PREFIX = "/";
+    public static final String COMMENT_PREFIX = Compiler.COMMENT_PREFIX;
+
+    /**
+     * Immutable snapshot of consecutive dirty paragraphs, handed to the {@link AssemblyArea#compileExecutor}.
+     */
+    private record DirtyRun(int start, List<String> paragraphs) {}
+
+    /**
+     * The compile result of a {@link DirtyRun}, ready to be applied on the FX thread.
+     * @param style Style spans of the entire run, or null if it contains no text.
+     * @param output The runs output lines, each terminated by a line break.
+     */
+    private record CompiledRun(int start, List<CompiledLine> lines, StyleSpans<Collection<String>> style, String output) {}
+
+    /**
+     * One entry per paragraph, kept in sync with the document via {@link #plainTextChanges()}.
+     * {@link AssemblyArea#update()} only recompiles entries marked dirty.
+     */
+    private final ParagraphCache paragraphCache = new ParagraphCache();
+    /**
+     * Inclusive bounds of the dirty entries within {@link AssemblyArea#paragraphCache}.
+     */
+    private int firstDirtyParagraph = 0, lastDirtyParagraph = 0;
+    /**
+     * The error text of every paragraph from this one on is rewritten on the next update, as their line numbers have shifted.
+     * Integer.MAX_VALUE if there is none.
+     */
+    private int firstRenumberedParagraph = Integer.MAX_VALUE;
+
+    /**
+     * Compiles snapshots of the document off the FX thread, one at a time.
+     */
+    private static final ExecutorService compileExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "AssemblyArea-Compiler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> pendingCompilation = null;
+    /**
+     * Incremented on every edit, results compiled from an older version are discarded.
+     */
+    private long documentVersion = 0;
 
     public AssemblyArea() {
         setTextInsertionStyle(Collections.singleton(PARAMETER_TEXT));
@@ -63,6 +115,8 @@ public class AssemblyArea extends CodeArea {
 
         initDialogs();
 
+        plainTextChanges().subscribe(this::onPlainTextChange);
+
         addEventFilter(KeyEvent.KEY_PRESSED, event -> {
             if (event.isControlDown()) {
                 switch (event.getCode()) {
@@ -85,19 +139,16 @@ public class AssemblyArea extends CodeArea {
                         outputBuilder.setLength(0);
 
                         String[] split = getText().split("\n");
-                        for (int i = 0; i < split.length; i++) {
-                            String paragraph = split[i];
+                        for (String paragraph : split) {
                             if (!paragraph.isEmpty()) {
                                 if (paragraph.startsWith(COMMENT_PREFIX)) {
                                     outputBuilder.append("--").append(paragraph.substring(commentPrefixLength)).append('\n');
                                 } else {
-                                    outputBuilder.append("memory.writeword(");
-                                    boolean success = processAssemblyParagraph(i, paragraph);
-                                    if (!success) {
-                                        outputBuilder.setLength(outputBuilder.length() - 1);
-                                        outputBuilder.append("-- UNRECOGNIZED INSTRUCTION!").append('\n');
+                                    CompiledLine compiled = Compiler.compileLine(paragraph);
+                                    if (compiled.hasOutputLine()) {
+                                        compiled.appendOutput(outputBuilder.append("memory.writeword(")).append(")\n");
                                     } else {
-                                        outputBuilder.append(")\n");
+                                        outputBuilder.append("-- UNRECOGNIZED INSTRUCTION!").append('\n');
                                     }
                                 }
                             }
@@ -116,7 +167,6 @@ public class AssemblyArea extends CodeArea {
 
         setOnKeyTyped(
                 event -> {
-                    JoJoWriteController.getInstance().clearOutput();
                     // Autocompletes the next address on the new line, provided the line on which the user pressed enter starts with an address.
                     if (event.getCharacter().equals("\r") || event.getCharacter().equals("\n")) {
                         if (event.isShiftDown()) {
@@ -211,7 +261,7 @@ public class AssemblyArea extends CodeArea {
         // Assuming all one-liners (must be, it's an ASM editor)
         final double paragraphHeight = getTotalHeightEstimate() / numParagraphs;
         final double baseNewScrollY = index * paragraphHeight;
-        // Same concept as OverwriteBox#assignParentPane()
+        // Pulls the paragraph up proportionally to the scroll position, so it doesn't end up cut off below the viewport
         final double newScrollY = baseNewScrollY - paragraphHeight * (baseNewScrollY / getTotalHeightEstimate());
 
         scrollToPixel(getEstimatedScrollX(), newScrollY);
@@ -219,173 +269,250 @@ public class AssemblyArea extends CodeArea {
     }
 
     /**
-     * Styles paragraphs within the document.
-     * @param forceAll Whether to style the entire document or not.
+     * Keeps {@link AssemblyArea#paragraphCache} aligned with the document.
+     * Paragraphs merged away by the change are dropped (along with their output lines), new ones are inserted as dirty.
      */
-    public void updateVisualsOnly(boolean forceAll) {
-        long ms = System.currentTimeMillis();
-
-        String[] paragraphs = getText().split("\n");
-        int startIndex = 0;
-        final int firstVisibleParagraphIndex = forceAll ? 0 : firstVisibleParToAllParIndex();
-        final int lastVisibleParagraphIndex = forceAll ? paragraphs.length : lastVisibleParToAllParIndex();
-
-        for (int i = 0; i < paragraphs.length; i++) {
-            String paragraph = paragraphs[i];
-            if (paragraph.isEmpty()) {
-                startIndex++;
-            } else {
-                int paraLength = paragraph.length();
-
-                if (firstVisibleParagraphIndex <= i && i <= lastVisibleParagraphIndex) { // Visible
-                    if (paragraph.startsWith(COMMENT_PREFIX)) { // Comments
-                        setStyle(startIndex, startIndex + paraLength, commentTextStyle);
-                    } else { // Assembly
-                        styleAssemblyParagraph(startIndex, paragraph);
-                    }
-                }
+    private void onPlainTextChange(PlainTextChange change) {
+        documentVersion++;
+        cancelPendingCompilation();
+
+        // The text before the change is untouched, so this index is valid both before and after it
+        final int firstParagraph = offsetToPosition(change.getPosition(), TwoDimensional.Bias.Forward).getMajor();
+        final int removedParagraphs = countLineBreaks(change.getRemoved());
+        final int insertedParagraphs = countLineBreaks(change.getInserted());
+
+        if (removedParagraphs > 0) {
+            final int firstOutputLine = paragraphCache.outputLinesBefore(firstParagraph + 1);
+            final int removedOutputLines = paragraphCache.outputLinesBefore(firstParagraph + 1 + removedParagraphs) - firstOutputLine;
+            if (removedOutputLines > 0)
+                JoJoWriteController.getInstance().replaceOutputLines(firstOutputLine, removedOutputLines, "");
+            // Their error text is dropped by rewriting that of every following paragraph, see firstRenumberedParagraph
+            if (paragraphCache.errorLengthBefore(firstParagraph + 1 + removedParagraphs) > paragraphCache.errorLengthBefore(firstParagraph + 1))
+                firstRenumberedParagraph = Math.min(firstRenumberedParagraph, firstParagraph + 1);
+            paragraphCache.remove(firstParagraph + 1, removedParagraphs);
+        }
 
-                startIndex += paraLength + 1; // Account for omitted \n
-            }
+        paragraphCache.insert(firstParagraph + 1, insertedParagraphs);
+
+        // Shift the dirty range along with the paragraphs after the change
+        if (lastDirtyParagraph > firstParagraph + removedParagraphs) {
+            lastDirtyParagraph += insertedParagraphs - removedParagraphs;
+        } else {
+            lastDirtyParagraph = firstParagraph + insertedParagraphs;
         }
+        firstDirtyParagraph = Math.min(firstDirtyParagraph, firstParagraph);
+        paragraphCache.get(firstParagraph).dirty = true;
 
-        System.out.println("Finished AssemblyArea#updateVisualsOnly() in: " + (System.currentTimeMillis() - ms) + "ms.");
+        // Line numbers of every following error have shifted
+        if (removedParagraphs != insertedParagraphs) firstRenumberedParagraph = Math.min(firstRenumberedParagraph, firstParagraph + 1);
     }
 
-    @Deprecated
-    final List<Long> perfAvg = new ArrayList<>();
+    private static int countLineBreaks(String text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++)
+            if (text.charAt(i) == '\n') count++;
+        return count;
+    }
 
     /**
-     * Processes all Assembly instructions and attempts compilation on them.
-     * Styles all visible paragraphs.
+     * @return The index of the output line that belongs to the specified paragraph (or would, if the paragraph compiled).
      */
-    public void update() {
-        long ms = System.currentTimeMillis();
-
-        Compiler.clearErrors();
-
-        outputBuilder.setLength(0);
-
-        // getParagraphs() causes an IllegalAccessError due to some insane fucking module linking issue
-        String[] paragraphs = getText().split("\n");
-        int startIndex = 0;
-        final int firstVisibleParagraphIndex = firstVisibleParToAllParIndex();
-        final int lastVisibleParagraphIndex = lastVisibleParToAllParIndex();
-        final int firstModifiedCharacter = getSelection().getStart();
-        final int lastModifiedCharacter = getSelection().getEnd();
-
-        for (int i = 0; i < paragraphs.length; i++) {
-            String paragraph = paragraphs[i];
-            if (paragraph.isEmpty()) {
-                startIndex++;
-            } else {
-                int paraLength = paragraph.length();
-
-                boolean visible = firstVisibleParagraphIndex <= i && i <= lastVisibleParagraphIndex;
-                // Also catches the next few paragraphs, but that's fine
-                // +/- paraLength serves as a buffer to ensure the paragraph was caught in the range.
-                boolean modified = lastModifiedCharacter >= startIndex - paraLength && firstModifiedCharacter <= startIndex + paraLength;
-
-                if (paragraph.startsWith(COMMENT_PREFIX)) { // Comments
-                    if (visible) setStyle(startIndex, startIndex + paraLength, commentTextStyle);
-                } else { // Assembly
-                    Compiler.openErrorLog(i);
-                    boolean success = processAssemblyParagraph(i, paragraph);
-                    if (success) {
-                        outputBuilder.append('\n');
-                        if (visible || modified) styleAssemblyParagraph(startIndex, paragraph);
-                    }
-                }
+    public int getOutputLineIndex(int paragraph) {
+        return paragraphCache.outputLinesBefore(paragraph);
+    }
+
+    /**
+     * @return Whether the specified paragraph occupies a line in the output.
+     */
+    public boolean hasOutputLine(int paragraph) {
+        return paragraphCache.get(paragraph).compiled().hasOutputLine();
+    }
 
-                startIndex += paraLength + 1; // Account for omitted \n
+    /**
+     * Recompiles and restyles every paragraph edited since the last update.
+     * Snapshots the edited paragraphs and compiles them on the {@link AssemblyArea#compileExecutor}, so the FX thread only applies the results.
+     * A compilation still running when this is called (or when the document is edited) is cancelled.
+     */
+    public void update() {
+        cancelPendingCompilation();
+
+        final long version = documentVersion;
+        final List<DirtyRun> dirtyRuns = snapshotDirtyRuns();
+        pendingCompilation = compileExecutor.submit(() -> {
+            final List<CompiledRun> compiledRuns = new ArrayList<>(dirtyRuns.size());
+            for (DirtyRun dirtyRun : dirtyRuns) {
+                final CompiledRun compiledRun = compileRun(dirtyRun);
+                if (compiledRun == null) return; // Cancelled
+                compiledRuns.add(compiledRun);
             }
-        }
 
-        Compiler.displayErrors();
-        JoJoWriteController.getInstance().appendToOutput(outputBuilder.toString());
+            Platform.runLater(() -> applyCompiledRuns(version, compiledRuns));
+        });
+    }
 
-        long delta = (System.currentTimeMillis() - ms);
-        perfAvg.add(delta);
-        System.out.println("Finished AssemblyArea#update() in: " + delta + "ms, average: " + perfAvg.stream().mapToLong(i -> i).sum() / perfAvg.size() + ".");
+    private void cancelPendingCompilation() {
+        if (pendingCompilation != null) {
+            pendingCompilation.cancel(true);
+            pendingCompilation = null;
+        }
     }
 
-    private static final StyleSpans<? extends Collection<String>> addressPrefixStyle =
-            StyleSpans.singleton(Collections.singleton(ADDRESS_TEXT), 8).append(
-                    new StyleSpan<>(Collections.singleton(BASIC_TEXT), 1));
     /**
-     * Styles a paragraph assuming it contains an address pointer and Assembly instruction.
-     * @param startIndex The character index, within the context of {@link AssemblyArea#getText()}
+     * Copies the text of every dirty paragraph, grouped into runs of consecutive paragraphs.
+     * Must be called on the FX thread.
      */
-    private void styleAssemblyParagraph(int startIndex, String paragraph) {
-        //long ms = System.currentTimeMillis();
-        final int paraLength = paragraph.length();
-        if (paraLength < 9) return;
+    private List<DirtyRun> snapshotDirtyRuns() {
+        final List<DirtyRun> dirtyRuns = new ArrayList<>();
+        int paragraph = firstDirtyParagraph;
+        while (paragraph <= lastDirtyParagraph) {
+            if (!paragraphCache.get(paragraph).dirty) {
+                paragraph++;
+                continue;
+            }
 
-        // The time expense of running this check is worth not repeating the expense of setting style spans
-        if (!getStyleSpans(startIndex, startIndex + 9).equals(addressPrefixStyle)) {
-            setStyleSpans(startIndex, addressPrefixStyle);
+            final int runStart = paragraph;
+            final List<String> paragraphs = new ArrayList<>();
+            for (; paragraph <= lastDirtyParagraph && paragraphCache.get(paragraph).dirty; paragraph++)
+                paragraphs.add(getText(paragraph));
+            dirtyRuns.add(new DirtyRun(runStart, paragraphs));
         }
+        return dirtyRuns;
+    }
 
-        // Style keyword
-        final int keywordEndIndex = paragraph.indexOf(" ", 10); // 8 address digits, ':', minimum 2 character instruction keyword, zero-based indexing
-        if (keywordEndIndex == -1) {
-            setStyle( startIndex + 9, startIndex + paraLength, keywordTextStyle);
-            return;
-        } else {
-            setStyle( startIndex + 9, startIndex + keywordEndIndex, keywordTextStyle);
+    /**
+     * Compiles and styles a run of paragraphs, without touching the document.
+     * @return The result, or null if the calling thread was interrupted.
+     */
+    private CompiledRun compileRun(DirtyRun dirtyRun) {
+        final List<String> paragraphs = dirtyRun.paragraphs();
+        // Large runs (such as a freshly loaded file) are compiled in parallel
+        final CompiledLine[] lines = Assembler.assemble(paragraphs, dirtyRun.start());
+        final StringBuilder output = new StringBuilder();
+        final StyleSpansBuilder<Collection<String>> styleBuilder = new StyleSpansBuilder<>();
+        int styledLength = 0;
+
+        for (int i = 0; i < lines.length; i++) {
+            if (Thread.currentThread().isInterrupted()) return null;
+
+            final String text = paragraphs.get(i);
+            final CompiledLine compiled = lines[i];
+            if (compiled.hasOutputLine()) compiled.appendOutput(output).append('\n');
+
+            if (i > 0) { // Account for omitted \n
+                styleBuilder.add(parameterTextStyle, 1);
+                styledLength++;
+            }
+            if (!text.isEmpty()) {
+                for (StyleSpan<Collection<String>> span : computeParagraphStyle(text)) styleBuilder.add(span);
+                styledLength += text.length();
+            }
         }
 
-        // Style specific characters
-        for (int i = keywordEndIndex; i < paraLength; i++) {
-            Set<String> style = styleMap.get(paragraph.charAt(i));
-            if (style == null) continue;
-            int charIndex = startIndex + i;
-            setStyle(charIndex, charIndex + 1, style);
-        }
-        //System.out.println("Completed AssemblyArea#styleAssemblyParagraph() in: " + (System.currentTimeMillis() - ms) + "ms.");
+        return new CompiledRun(dirtyRun.start(), Arrays.asList(lines), styledLength > 0 ? styleBuilder.create() : null, output.toString());
     }
 
     /**
-     * Gets all possible instructions for this paragraph.
-     * If there is only one, it is compiled and put in the {@link AssemblyArea#outputBuilder} in the format of 0xADDRESS, 0xBYTECODE
-     * @return Whether the paragraph contains enough data to try to compile.
+     * Applies the results of {@link AssemblyArea#compileRun(DirtyRun)} to the document, the output and the error area.
+     * Each run replaces its slice of the output and of the error area in one go; untouched paragraphs are never revisited,
+     * unless their error line numbers have shifted.
+     * @param version The {@link AssemblyArea#documentVersion} the results were compiled from, they are discarded if it's outdated.
      */
-    private boolean processAssemblyParagraph(int lineIndex, String paragraph) {
-        String[] tokens = paragraph.split(":"); // [06123456:FOO BAR] -> [06123456], [FOO BAR]
-        final String addressStr = tokens[0];
-        if (tokens.length < 2) return false; // Must have address and instruction to begin styling
-
-        // Ensure valid address format
-        if (addressStr.length() < 8) {
-            Compiler.raiseError("Invalid address length: " + addressStr);
-            return false;
-        }
-        try {
-            if (Integer.parseUnsignedInt(addressStr, 16) % 2 != 0) {
-                Compiler.raiseError("Unaligned address: " + addressStr);
-                return false;
+    private void applyCompiledRuns(long version, List<CompiledRun> compiledRuns) {
+        if (version != documentVersion) return;
+
+        final JoJoWriteController controller = JoJoWriteController.getInstance();
+        for (CompiledRun compiledRun : compiledRuns) {
+            final int runStart = compiledRun.start(), runEnd = runStart + compiledRun.lines().size();
+            final int outputLine = paragraphCache.outputLinesBefore(runStart);
+            final int oldOutputLines = paragraphCache.outputLinesBefore(runEnd) - outputLine;
+            // Error text from firstRenumberedParagraph on is rewritten as a whole below
+            final int errorEnd = Math.min(runEnd, firstRenumberedParagraph);
+            final int errorStart = paragraphCache.errorLengthBefore(runStart);
+            final int oldErrorLength = runStart < errorEnd ? paragraphCache.errorLengthBefore(errorEnd) - errorStart : 0;
+            final StringBuilder errorText = new StringBuilder();
+
+            for (int i = 0; i < compiledRun.lines().size(); i++) {
+                final int compiledParagraph = runStart + i;
+                final CompiledLine compiled = compiledRun.lines().get(i);
+                paragraphCache.setCompiled(compiledParagraph, compiled);
+                paragraphCache.get(compiledParagraph).dirty = false;
+
+                final String paragraphErrors = renderErrors(compiledParagraph, compiled);
+                paragraphCache.setErrorText(compiledParagraph, paragraphErrors);
+                if (compiledParagraph < errorEnd) errorText.append(paragraphErrors);
             }
-        } catch (NumberFormatException e) {
-            Compiler.raiseError("Invalid character in Hex literal");
-            return false;
+
+            if (compiledRun.style() != null) setStyleSpans(getAbsolutePosition(runStart, 0), compiledRun.style());
+            controller.replaceOutputLines(outputLine, oldOutputLines, compiledRun.output());
+            controller.replaceErrorText(errorStart, errorStart + oldErrorLength, errorText.toString());
         }
 
-        final String instructionStr = tokens[1];
-        if (instructionStr.isEmpty()) return false;
-        final List<Instruction> possible = Compiler.getPossibleInstructions(addressStr, instructionStr).toList();
-        if (possible.isEmpty()) {
-            if (Compiler.noLoggedErrors()) Compiler.raiseError("Unrecognized instruction: " + instructionStr);
-        } else if (possible.size() == 1) {
-            Compiler.clearErrors(lineIndex);
-            outputBuilder.append("0x").append(addressStr).append(", 0x").append(Compiler.compileToHexString(possible.get(0), addressStr, instructionStr));
-            /*
-            outputBuilder.append( // Testing whether bytecode matches direct hex string compilation
-                    JJWUtils.bytesToHex(Compiler.compileToBytes(possible.get(0), addressStr, instructionStr))
-            ).append('\n');
-             */
+        firstDirtyParagraph = Integer.MAX_VALUE;
+        lastDirtyParagraph = -1;
+
+        if (firstRenumberedParagraph != Integer.MAX_VALUE) {
+            renumberErrors(firstRenumberedParagraph);
+            firstRenumberedParagraph = Integer.MAX_VALUE;
         }
+    }
 
-        return true;
+    /**
+     * Rewrites the error text of every paragraph from firstParagraph on with its current line number, without recompiling anything.
+     */
+    private void renumberErrors(int firstParagraph) {
+        final int errorStart = paragraphCache.errorLengthBefore(firstParagraph);
+        final StringBuilder errorText = new StringBuilder();
+        paragraphCache.forEachWithErrors(firstParagraph, (cached, paragraph) -> {
+            final String paragraphErrors = renderErrors(paragraph, cached.compiled());
+            paragraphCache.setErrorText(paragraph, paragraphErrors);
+            errorText.append(paragraphErrors);
+        });
+
+        final JoJoWriteController controller = JoJoWriteController.getInstance();
+        controller.replaceErrorText(errorStart, controller.errorArea.getLength(), errorText.toString());
+    }
+
+    /**
+     * @return The lines paragraph contributes to the error area, each terminated by a line break.
+     */
+    private static String renderErrors(int paragraph, CompiledLine compiled) {
+        if (compiled.diagnostics().isEmpty()) return "";
+        final StringBuilder errorBuilder = new StringBuilder();
+        // Not Diagnostic#line(), which is outdated once lines are inserted or removed above
+        for (Diagnostic diagnostic : compiled.diagnostics())
+            errorBuilder.append("Ln. ").append(paragraph + 1).append(": ").append(diagnostic.getMessage()).append('\n');
+        return errorBuilder.toString();
+    }
+
+    /**
+     * Computes the styling of a non-empty paragraph, which is either a comment or an address pointer followed by an Assembly instruction.
+     * @return Style spans covering the entire paragraph, excluding its line break.
+     */
+    private StyleSpans<Collection<String>> computeParagraphStyle(String paragraph) {
+        final StyleSpansBuilder<Collection<String>> builder = new StyleSpansBuilder<>();
+        final int paraLength = paragraph.length();
+
+        if (paragraph.startsWith(COMMENT_PREFIX)) {
+            builder.add(commentTextStyle, paraLength);
+        } else if (paraLength < 9) {
+            builder.add(parameterTextStyle, paraLength);
+        } else {
+            builder.add(addressTextStyle, 8);
+            builder.add(basicTextStyle, 1);
+
+            // Style keyword
+            int keywordEndIndex = paragraph.indexOf(" ", 10); // 8 address digits, ':', minimum 2 character instruction keyword, zero-based indexing
+            if (keywordEndIndex == -1) keywordEndIndex = paraLength;
+            if (keywordEndIndex > 9) builder.add(keywordTextStyle, keywordEndIndex - 9);
+
+            // Style specific characters
+            for (int i = keywordEndIndex; i < paraLength; i++) {
+                Set<String> style = styleMap.get(paragraph.charAt(i));
+                builder.add(style == null ? parameterTextStyle : style, 1);
+            }
+        }
+
+        return builder.create();
     }
 
     private static class DefaultContextMenu extends ContextMenu
@@ -410,35 +537,22 @@ public class AssemblyArea extends CodeArea {
          * Shows the currently selected instruction in the output
          */
         private void showInOutput() {
-            CodeArea area = ((CodeArea) getOwnerNode());
-            String[] paragraphs = area.getText().split("\n");
-            int paragraphIndex = -1;
+            AssemblyArea area = ((AssemblyArea) getOwnerNode());
             int currentParagraphIndex = area.getCurrentParagraph();
-            if (notAnInstruction(paragraphs[currentParagraphIndex])) return;
-
-            for (int i = 0; i < paragraphs.length; i++) {
-                String paragraph = paragraphs[i];
-                if (notAnInstruction(paragraph)) continue;
-                paragraphIndex++;
-                if (i == currentParagraphIndex) break;
-            }
-            if (paragraphIndex == -1 || paragraphIndex >= paragraphs.length) return;
+            if (!area.hasOutputLine(currentParagraphIndex)) return;
+            int paragraphIndex = area.getOutputLineIndex(currentParagraphIndex);
 
             StyleClassedTextArea outputArea = JoJoWriteController.getInstance().output;
             outputArea.selectRange(paragraphIndex, 4, paragraphIndex, 0);
 
             final double paragraphHeight = outputArea.getTotalHeightEstimate() / outputArea.getText().split("\n").length;
             final double baseNewScrollY = paragraphIndex * paragraphHeight;
-            // Same concept as OverwriteBox#assignParentPane()
+            // Pulls the paragraph up proportionally to the scroll position, so it doesn't end up cut off below the viewport
             final double newScrollY = baseNewScrollY - paragraphHeight * (baseNewScrollY / outputArea.getTotalHeightEstimate());
             final double scrollX = outputArea.getEstimatedScrollX();
             outputArea.scrollToPixel(scrollX, newScrollY);
         }
 
-        private static boolean notAnInstruction(String s) {
-            return s.isEmpty() || s.startsWith(COMMENT_PREFIX);
-        }
-
         /**
          * Folds multiple lines of selected text, only showing the first line and hiding the rest.
          */
@@ -0,0 +1,124 @@
+package net.arna.jojowrite.node;
+
+import net.arna.jojowrite.JJWUtils;
+import net.arna.jojowrite.asm.Disassembler;
+import net.arna.jojowrite.overwrite.OverwriteStore;
+import net.arna.jojowrite.rom.RomImage;
+import org.fxmisc.richtext.StyleClassedTextArea;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
+
+import java.util.*;
+
+import static net.arna.jojowrite.TextStyles.BASIC_TEXT;
+import static net.arna.jojowrite.TextStyles.OVERWRITTEN_TEXT;
+
+/**
+ * Read-only disassembly of the ROM, one instruction per line, shown next to the {@link ROMArea} of a {@link ROMBox}.
+ * Only the lines that fit on screen are rendered. They are taken from pages of {@link DisassemblyArea#PAGE_WORDS} decoded instructions,
+ * of which the most recently used {@link DisassemblyArea#CACHED_PAGES} are kept, so scrolling never decodes more than a page at a time.
+ * <p>
+ * Pages hold the original ROM; words changed by overwrites are decoded on every update and styled as {@link net.arna.jojowrite.TextStyles#OVERWRITTEN_TEXT}.
+ */
+public class DisassemblyArea extends StyleClassedTextArea {
+    private static final int PAGE_WORDS = 256, PAGE_BYTES = PAGE_WORDS * 2;
+    private static final int CACHED_PAGES = 32;
+
+    private RomImage rom;
+    private long address = 0;
+    /**
+     * Decoded lines keyed by page index, in access order so the least recently used page is evicted first.
+     */
+    private final Map<Integer, String[]> pageCache = new LinkedHashMap<>(CACHED_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String[]> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+
+    public DisassemblyArea() {
+        super();
+        setEditable(false);
+        setWrapText(false);
+    }
+
+    public void setRom(RomImage rom) {
+        this.rom = rom;
+        pageCache.clear();
+        clear();
+    }
+
+    /**
+     * @return How many lines fit into the viewport.
+     */
+    public int getLineCapacity() {
+        return Math.max(1, (int) (getHeight() / ROMArea.BYTE_HEIGHT));
+    }
+
+    /**
+     * Shows the instructions from the word containing address onwards.
+     * @param overwrites Applied on top of the ROM.
+     */
+    public void display(long address, OverwriteStore overwrites) {
+        this.address = address;
+        if (rom == null) return;
+
+        final long start = address & ~1L;
+        final int wordCount = (int) Math.max(0, Math.min(getLineCapacity(), (rom.length() - start) / 2));
+        final byte[] overwrittenBytes = new byte[wordCount * 2];
+        final boolean[] overwritten = new boolean[wordCount * 2];
+        overwrites.applyTo(start, overwrittenBytes, overwritten);
+
+        final StringBuilder text = new StringBuilder(wordCount * 32);
+        final StyleSpansBuilder<Collection<String>> styleBuilder = new StyleSpansBuilder<>();
+        for (int i = 0; i < wordCount; i++) {
+            final int wordAddress = (int) start + i * 2;
+            final int lineStart = text.length();
+            if (overwritten[i * 2] || overwritten[i * 2 + 1]) {
+                final int high = overwritten[i * 2] ? overwrittenBytes[i * 2] : rom.get(wordAddress);
+                final int low = overwritten[i * 2 + 1] ? overwrittenBytes[i * 2 + 1] : rom.get(wordAddress + 1);
+                Disassembler.appendLine(JJWUtils.ROM_ADDRESS_BASE + wordAddress, (high & 0xFF) << 8 | low & 0xFF, text);
+                styleBuilder.add(Collections.singleton(OVERWRITTEN_TEXT), text.length() - lineStart);
+            } else {
+                text.append(lineAt(wordAddress));
+                styleBuilder.add(Collections.singleton(BASIC_TEXT), text.length() - lineStart);
+            }
+            if (i != wordCount - 1) {
+                text.append('\n');
+                styleBuilder.add(Collections.singleton(BASIC_TEXT), 1);
+            }
+        }
+
+        replaceText(text.toString());
+        if (text.length() != 0) setStyleSpans(0, styleBuilder.create());
+    }
+
+    /**
+     * Re-renders the current address, e.g. after the viewport was resized.
+     */
+    public void refresh(OverwriteStore overwrites) {
+        display(address, overwrites);
+    }
+
+    private String lineAt(int wordAddress) {
+        final int page = wordAddress / PAGE_BYTES;
+        String[] lines = pageCache.get(page);
+        if (lines == null) {
+            lines = decodePage(page);
+            pageCache.put(page, lines);
+        }
+        return lines[(wordAddress % PAGE_BYTES) / 2];
+    }
+
+    private String[] decodePage(int page) {
+        final int pageStart = page * PAGE_BYTES;
+        final byte[] code = rom.read(pageStart, PAGE_BYTES);
+        final String[] lines = new String[code.length / 2];
+        final StringBuilder line = new StringBuilder(32);
+        for (int i = 0; i < lines.length; i++) {
+            line.setLength(0);
+            Disassembler.appendLine(JJWUtils.ROM_ADDRESS_BASE + pageStart + i * 2, (code[i * 2] & 0xFF) << 8 | code[i * 2 + 1] & 0xFF, line);
+            lines[i] = line.toString();
+        }
+        return lines;
+    }
+}
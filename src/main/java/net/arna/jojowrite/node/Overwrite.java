@@ -4,9 +4,10 @@ import javafx.scene.control.Button;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
+import net.arna.jojowrite.JJWUtils;
 import net.arna.jojowrite.JoJoWriteController;
-
-import java.util.ArrayList;
+import net.arna.jojowrite.overwrite.OverwriteStore;
+import org.fxmisc.flowless.Cell;
 
 /*
  * [Address Text]:[Overwrite Text][Show in ROM][Delete]
@@ -14,7 +15,9 @@ import java.util.ArrayList;
  */
 
 /***
- * A lazy-loaded {@link VBox} Node used for user I/O of overwrite data.
+ * A {@link VBox} Node used for user I/O of overwrite data.
+ * The data itself lives in the {@link OverwriteStore} of its {@link OverwriteBox}; edits are written straight back to it.
+ * Overwrites are the reusable cells of the OverwriteBoxes list, so only those on screen exist, each showing the store entry at its current position.
  * The {@link Overwrite#addressField} is coerced to an 8-digit Hex string.
  * The {@link Overwrite#overwriteField} is coerced into a Hex string.
  * The {@link Overwrite#commentField} is used so the user has an easier time remembering & understanding what their changes are doing.
@@ -33,82 +36,52 @@ import java.util.ArrayList;
  *  Add a LOGGER
  *  fix overwrites not displaying on start page of ROM
  */
-public class Overwrite extends VBox {
+public class Overwrite extends VBox implements Cell<Integer, Overwrite> {
     /**
      * Contains text of an 8-digit hex pointer to ROM memory.
-     * Updating this fields text will cause a {@link Overwrite#separateBytes()}
+     * Updating this fields text will cause a {@link Overwrite#storeAddress()}
      */
-    private HexTextField addressField;
+    private final HexTextField addressField;
     /**
      * Contains an unbounded string of hex digits, which are coerced into pairs.
-     * Updating this fields text will cause a {@link Overwrite#separateBytes()}
+     * Updating this fields text will cause a {@link Overwrite#storeBytes()}
      */
-    private OverwriteField overwriteField;
+    private final OverwriteField overwriteField;
     /**
      * May contain most characters, used by the user to annotate what this {@link Overwrite} does.
      */
-    private TextField commentField;
-    /**
-     * A HashMap containing indices and byte Strings, used for rendering Overwrites in the {@link ROMArea}.
-     */
-    private final ArrayList<String> byteStrings = new ArrayList<>();
-    //private final ArrayList<Byte> bytes = new ArrayList<>();
+    private final TextField commentField;
 
     public static final double OVERWRITE_TEXT_MIN_WIDTH = 240.0, OVERWRITE_TEXT_MAX_WIDTH = 640.0, OVERWRITE_MIN_HEIGHT = 68.0;
 
-    private boolean loaded = false;
-
-    private OverwriteBox overwrites = null;
-
-    public Overwrite() {
-        setMinHeight(OVERWRITE_MIN_HEIGHT);
-
-        visibleProperty().setValue(false);
-        visibleProperty().addListener(
-                (observable, oldValue, newValue) -> {
-                    if (!loaded && newValue) load();
-                }
-        );
-    }
-
-    public double getLayoutHeight() {
-        if (loaded) return getBoundsInLocal().getHeight();
-        return OVERWRITE_MIN_HEIGHT;
-    }
-
+    private final OverwriteBox overwrites;
     /**
-     * Constructs an Overwrite and assigns it to:
-     * @param overwrites a container {@link OverwriteBox}
+     * The position of the shown entry in the {@link OverwriteStore}.
      */
-    public Overwrite(OverwriteBox overwrites) {
-        this();
-        assignOverwriteBox(overwrites, true);
-    }
+    private int position;
+    /**
+     * Set while the fields are filled from the store, so that doesn't count as an edit.
+     */
+    private boolean showingEntry = false;
 
-    public void assignOverwriteBox(OverwriteBox overwrites, boolean prepend) {
+    Overwrite(OverwriteBox overwrites, int position) {
         this.overwrites = overwrites;
-        if (prepend) overwrites.add(0, this);
-        else overwrites.add(this);
-    }
+        setMinHeight(OVERWRITE_MIN_HEIGHT);
 
-    private void load() {
-        if (loaded) throw new IllegalStateException("Tried to load Overwrite more than once!");
-        if (overwrites == null) throw new IllegalStateException("Tried to load Overwrite without an assigned OverwriteBox!");
         HBox overwriteAndOptions = new HBox();
 
-        addressField = new HexTextField(bufferAddressText == null ? "00000000" : bufferAddressText, 8);
+        addressField = new HexTextField("00000000", 8);
         addressField.getStyleClass().add("address");
         addressField.setPromptText("Address");
         addressField.setMaxWidth(98.0);
         addressField.setOnKeyTyped(
                 keyEvent -> {
-                    separateBytes();
+                    storeAddress();
                     JoJoWriteController.getInstance().refreshOverwrites();
                 }
         );
 
         overwriteField = new OverwriteField(this);
-        overwriteField.setText(bufferOverwriteText);
         overwriteField.getStyleClass().add("overwrite-field");
         overwriteField.setMinWidth(OVERWRITE_TEXT_MIN_WIDTH);
         overwriteField.setMaxWidth(OVERWRITE_TEXT_MAX_WIDTH);
@@ -120,118 +93,116 @@ public class Overwrite extends VBox {
         Button delete = new Button("Delete");
         delete.getStyleClass().add("delete-button");
         delete.setOnAction(event -> {
-            overwrites.removeAndUpdate(this);
+            overwrites.remove(this);
             JoJoWriteController.getInstance().refreshOverwrites();
         });
         //delete.setMinWidth(85.0);
 
         overwriteAndOptions.getChildren().addAll(addressField, overwriteField, showInROM, delete);
 
-        commentField = new TextField(bufferCommentText);
+        commentField = new TextField();
         commentField.getStyleClass().add("code-area");
         commentField.setPromptText("Explain what this overwrite does");
+        commentField.textProperty().addListener(
+                (observable, oldValue, newValue) -> {
+                    if (!showingEntry) getStore().setComment(getPosition(), newValue);
+                }
+        );
 
         getChildren().addAll(overwriteAndOptions, commentField);
 
-        separateBytes();
+        showEntry(position);
+    }
 
-        loaded = true;
-        //System.out.println("Loaded new overwrite; " + this);
+    /**
+     * Fills the fields with the store entry at position.
+     */
+    private void showEntry(int position) {
+        this.position = position;
+        showingEntry = true;
+        addressField.setText(getAddressText());
+        overwriteField.setText(JJWUtils.bytesToHex(getStore().getBytes(position)));
+        commentField.setText(getStore().getComment(position));
+        showingEntry = false;
     }
 
-    void separateBytes() {
-        //System.out.println("Separating bytes...");
-        String byteText = getOverwriteText();
-        int byteTextLength = byteText.length();
-        if (byteTextLength % 2 != 0) throw new IllegalStateException("Overwrite field with uneven character count; " + overwriteField);
-        byteStrings.clear();
-        //todo: optimize??
-        for (int i = 0; i < byteTextLength; i += 2) {
-            // 2 digits represent 1 byte. DisplayROMAt() doubles the address to get the correct placement.
-            char first = byteText.charAt(i);
-            char second = byteText.charAt(i + 1);
-            String byteString = String.valueOf(first) + second;
-            byteStrings.add(byteString);
-            //bytes.add( (byte) ((Character.digit(first, 16) << 4) + Character.digit(second, 16)) );
-        }
+    @Override
+    public Overwrite getNode() {
+        return this;
     }
 
-    public ArrayList<String> getByteStrings() {
-        return byteStrings;
+    @Override
+    public boolean isReusable() {
+        return true;
     }
 
-    public int getAddress() {
-        String toParse = loaded ? addressField.getText() : bufferAddressText;
-        if (toParse.length() == 0) return 0;
-        return Integer.parseUnsignedInt(toParse, 16);
+    @Override
+    public void updateItem(Integer item) {
+        showEntry(item);
+    }
+
+    /**
+     * Called whenever overwrites before this one are added or removed.
+     */
+    @Override
+    public void updateIndex(int index) {
+        if (index != position) showEntry(index);
     }
 
-    public void setAddressText(String text) {
-        addressField.setText(text);
-        separateBytes();
+    private OverwriteStore getStore() {
+        return overwrites.getStore();
     }
 
-    public void setOverwriteText(String text) {
-        overwriteField.setText(text);
-        separateBytes();
+    /**
+     * @return The position of this Overwrite within its {@link OverwriteBox} and {@link OverwriteStore}.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Writes the {@link Overwrite#addressField} into the store.
+     */
+    void storeAddress() {
+        String addressText = addressField.getText();
+        getStore().setAddress(position, addressText.isEmpty() ? 0 : Integer.parseUnsignedInt(addressText, 16));
     }
 
-    public void setCommentText(String text) {
-        commentField.setText(text);
+    /**
+     * Writes the {@link Overwrite#overwriteField} into the store, once its digits are paired into bytes.
+     */
+    void storeBytes() {
+        String byteText = overwriteField.getText();
+        if (byteText.length() % 2 != 0) return;
+        getStore().setBytes(position, JJWUtils.hexStringToBytes(byteText));
+    }
+
+    public int getAddress() {
+        return getStore().getAddress(position);
     }
 
     public String getAddressText() {
-        if (loaded) return addressField.getText();
-        return bufferAddressText;
+        String hex = Integer.toHexString(getAddress());
+        return ("00000000" + hex).substring(hex.length());
     }
 
     public String getOverwriteText() {
-        if (loaded) return overwriteField.getText();
-        return bufferOverwriteText;
+        return overwriteField.getText();
     }
 
     public String getCommentText() {
-        if (loaded) return commentField.getText();
-        return bufferCommentText;
+        return commentField.getText();
     }
 
     @Override
     public String toString() {
-        return getAddressText() + ';' + getOverwriteText() + ';' + getCommentText();
-    }
-
-    public void bufferText(String address, String overwrite, String comment) {
-        bufferCommentText = comment;
-        bufferOverwriteText = overwrite;
-        bufferAddressText = address;
-    }
-
-    private String bufferAddressText = null;
-    private String bufferOverwriteText = null;
-    private String bufferCommentText = null;
-    public static Overwrite fromString(String raw) {
-        //long ms = System.currentTimeMillis();
-        Overwrite overwrite = new Overwrite();
-        String[] content = raw.split(";");
-        if (content.length > 1) {
-            overwrite.bufferAddressText = content[0];
-            overwrite.bufferOverwriteText = content[1];
-            if (content.length > 2) {
-                overwrite.bufferCommentText = content[2];
-            }
-            overwrite.separateBytes();
-        } else {
-            throw new IllegalArgumentException("Invalid string for generating Overwrite; " + raw);
-        }
-        //System.out.println("COMPLETE; took " + (System.currentTimeMillis() - ms) + "ms");
-        return overwrite;
+        return getStore().toString(position);
     }
 
     /**
      * Requests focus to this Overwrites {@link Overwrite#overwriteField} and places the caret at the end.
      */
     public void focus() {
-        if (!loaded) load();
         overwriteField.requestFocus();
         overwriteField.displaceCaret(overwriteField.getLength());
     }
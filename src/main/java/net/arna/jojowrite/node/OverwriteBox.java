@@ -1,29 +1,35 @@
 package net.arna.jojowrite.node;
 
-import javafx.geometry.Bounds;
-import javafx.scene.Node;
+import javafx.collections.ObservableListBase;
 import javafx.scene.control.DialogPane;
-import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TextFormatter;
 import javafx.scene.control.TextInputDialog;
 import javafx.scene.input.KeyEvent;
-import javafx.scene.layout.VBox;
+import javafx.scene.layout.StackPane;
 import net.arna.jojowrite.DialogHelper;
 import net.arna.jojowrite.JJWUtils;
-
-//todo: figure out if i can migrate type of getChildren() from ObservableList<Node> to ObservableList<Overwrite>
-public class OverwriteBox extends VBox {
-    private ScrollPane parentPane;
+import net.arna.jojowrite.overwrite.OverwriteStore;
+import org.fxmisc.flowless.VirtualFlow;
+import org.fxmisc.flowless.VirtualizedScrollPane;
+
+import java.util.Collections;
+
+/**
+ * A scrollable list of the overwrites in an {@link OverwriteStore}.
+ * Virtualized: only the {@link Overwrite}s in view exist as Nodes, and are reused as cells for other positions while scrolling.
+ */
+public class OverwriteBox extends StackPane {
+    private OverwriteStore store = new OverwriteStore();
+    /**
+     * The items of {@link OverwriteBox#flow}, which are simply the positions within {@link OverwriteBox#store}.
+     * Must be notified by every method adding or removing overwrites.
+     */
+    private final StorePositions positions = new StorePositions();
+    private final VirtualFlow<Integer, Overwrite> flow = VirtualFlow.createVertical(positions, position -> new Overwrite(this, position));
 
     public OverwriteBox() {
         super();
-        //getChildren().addListener((ListChangeListener<? super Node>) c -> updateVisibility());
-    }
-
-    public void assignParentPane(ScrollPane pane) {
-        this.parentPane = pane;
-        parentPane.heightProperty().addListener(observable -> updateVisibility());
-        parentPane.vvalueProperty().addListener(observable -> updateVisibility());
+        getChildren().add(new VirtualizedScrollPane<>(flow));
 
         // Ctrl + F to find an Overwrite
         addEventFilter(KeyEvent.KEY_PRESSED, event -> {
@@ -43,20 +49,9 @@ public class OverwriteBox extends VBox {
                         dialog.showAndWait().ifPresent(addressStr -> {
                             if (addressStr.isEmpty()) return;
                             int findAddress = Integer.parseUnsignedInt(addressStr, 16);
-                            for (Node node : getChildren()) {
-                                if (node instanceof Overwrite overwrite) {
-                                    if (overwrite.getAddress() == findAddress) {
-                                        // obj.getLayoutY() / parent.getHeight() is proportionally skewed relative to the size of the dataset
-                                        // this multiplier compensates for that, which gives the object the vertical space to display fully.
-                                        double relativeSizeMultiplier = 1.0 + overwrite.getHeight() / getHeight();
-                                        parentPane.setVvalue(relativeSizeMultiplier * overwrite.getLayoutY() / getHeight());
-                                        overwrite.focus();
-                                        break;
-                                    }
-                                } else {
-                                    throw new IllegalStateException("OverwriteBox contains non-Overwrite children!");
-                                }
-                            }
+                            int position = store.indexOfAddress(findAddress);
+                            if (position == -1) return;
+                            showAndFocus(position);
                         });
                     }
                     case S -> {
@@ -67,61 +62,96 @@ public class OverwriteBox extends VBox {
         });
     }
 
+    public OverwriteStore getStore() {
+        return store;
+    }
+
     /**
-     * Culls all Overwrites which are out of view within the viewport.
-     * Should be called after any batch of changes is applied to this OverwriteBoxes children, or when the user scrolls through it.
+     * Replaces every overwrite with those of store at once, e.g. after reading a file in the background.
      */
-    public void updateVisibility() {
-        Bounds parentBounds = parentPane.getLayoutBounds();
-        double verticalOffset = parentPane.getVvalue() * getHeight();
-        final double maxHeight = parentBounds.getMaxY();
-        // Slides the window of viewing properly according to the v.value (otherwise the visible overwrites would only reach where the ScrollBar handle is)
-        verticalOffset += maxHeight * (1 - parentPane.getVvalue());
-
-        //int numVisibleNodes = 0;
-        for (Node node : getChildrenUnmodifiable()) {
-            if (!(node instanceof Overwrite overwrite)) continue;
-            double nodeY = node.getLayoutY();
-            double nodeHeight = overwrite.getLayoutHeight();
-            // The node is in view if the vertical offset (with a buffer of the node height) is over the node Y position. (+Y goes down)
-            // ...and if its relative position to the top of the Viewport is under the Viewport height (maxHeight) + node height as a buffer.
-            boolean inView = verticalOffset + nodeHeight >= nodeY && verticalOffset - nodeY <= maxHeight + nodeHeight;
-            node.setVisible(inView);
-
-            //if (inView) numVisibleNodes++;
-        }
-        //System.out.println(numVisibleNodes);
+    public void setStore(OverwriteStore store) {
+        final int oldSize = this.store.size();
+        this.store = store;
+        positions.replaced(oldSize);
     }
 
     public void remove(Overwrite overwrite) {
-        getChildren().remove(overwrite);
+        int position = overwrite.getPosition();
+        if (position < 0 || position >= store.size()) return;
+        store.remove(position);
+        positions.removed(position);
     }
 
-    public void removeAndUpdate(Overwrite overwrite) {
-        remove(overwrite);
-        updateVisibility();
+    /**
+     * Inserts a new overwrite at position.
+     */
+    public void insert(int position, int address, byte[] bytes, String comment) {
+        store.insert(position, address, bytes, comment);
+        positions.inserted(position);
     }
 
     /**
-     * Appends an overwrite to the end of this OverwriteBoxes children.
+     * Appends an overwrite in the text format, see {@link OverwriteStore#addLine(String)}.
      */
-    public void add(Overwrite overwrite) {
-        getChildren().add(overwrite);
+    public void addLine(String line) {
+        store.addLine(line);
+        positions.inserted(store.size() - 1);
     }
 
-    public void add(int index, Overwrite overwrite) {
-        getChildren().add(index, overwrite);
+    public void clear() {
+        final int oldSize = store.size();
+        store.clear();
+        positions.replaced(oldSize);
     }
 
-    public void clear() {
-        getChildren().clear();
+    public int size() {
+        return store.size();
     }
 
-    public Node get(int index) {
-        return getChildrenUnmodifiable().get(index);
+    /**
+     * Scrolls the overwrite at position to the top of the list, and focuses its bytes.
+     */
+    public void showAndFocus(int position) {
+        flow.showAsFirst(position);
+        flow.layout();
+        flow.getCellIfVisible(position).ifPresent(Overwrite::focus);
     }
 
-    public int size() {
-        return getChildrenUnmodifiable().size();
+    /**
+     * A view of the positions [0, store.size()), whose changes are reported manually since the store isn't observable.
+     */
+    private class StorePositions extends ObservableListBase<Integer> {
+        @Override
+        public Integer get(int index) {
+            return index;
+        }
+
+        @Override
+        public int size() {
+            return store.size();
+        }
+
+        void inserted(int position) {
+            beginChange();
+            nextAdd(position, position + 1);
+            endChange();
+        }
+
+        void removed(int position) {
+            beginChange();
+            nextRemove(position, (Integer) position);
+            endChange();
+        }
+
+        /**
+         * Reports all oldSize positions as replaced by the current ones, in a single change.
+         */
+        void replaced(int oldSize) {
+            if (oldSize == 0 && store.size() == 0) return;
+            beginChange();
+            if (oldSize > 0) nextRemove(0, Collections.nCopies(oldSize, 0));
+            if (store.size() > 0) nextAdd(0, store.size());
+            endChange();
+        }
     }
 }
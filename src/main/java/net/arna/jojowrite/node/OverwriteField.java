@@ -34,7 +34,7 @@ public class OverwriteField extends StyleClassedTextField {
                         }
                     }
 
-                    overwrite.separateBytes();
+                    overwrite.storeBytes();
                     JoJoWriteController.getInstance().refreshOverwrites();
                 }
         );
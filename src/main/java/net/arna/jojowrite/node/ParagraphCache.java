@@ -0,0 +1,218 @@
+package net.arna.jojowrite.node;
+
+import net.arna.jojowrite.asm.CompiledLine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * The last compile result of every paragraph of an {@link AssemblyArea}, along with how many output lines and how much error text come before any paragraph.
+ * <p>
+ * Paragraphs are kept in blocks of up to {@link ParagraphCache#MAX_BLOCK_SIZE}, each of which knows its own totals,
+ * so inserting or removing paragraphs and finding the output line or error text offset of a paragraph cost O(blocks + block size) rather than O(paragraphs).
+ * <p>
+ * Not thread-safe, meant to be used from the FX thread.
+ */
+final class ParagraphCache {
+    private static final int BLOCK_SIZE = 256, MAX_BLOCK_SIZE = BLOCK_SIZE * 2;
+
+    static final class CachedParagraph {
+        private CompiledLine compiled = CompiledLine.NONE;
+        /**
+         * The lines this paragraph contributes to the error area, each terminated by a line break.
+         */
+        private String errorText = "";
+        boolean dirty = true;
+
+        CompiledLine compiled() {
+            return compiled;
+        }
+
+        String errorText() {
+            return errorText;
+        }
+    }
+
+    private static final class Block {
+        private final List<CachedParagraph> paragraphs;
+        private int outputLines = 0, errorLength = 0;
+
+        private Block(List<CachedParagraph> paragraphs) {
+            this.paragraphs = paragraphs;
+            for (CachedParagraph paragraph : paragraphs) {
+                if (paragraph.compiled.hasOutputLine()) outputLines++;
+                errorLength += paragraph.errorText.length();
+            }
+        }
+    }
+
+    private final List<Block> blocks = new ArrayList<>();
+    private int size = 0;
+    /**
+     * The index of the first paragraph of the block last found by {@link ParagraphCache#blockOf(int)}.
+     */
+    private int blockStart;
+
+    /**
+     * Contains a single dirty paragraph, like an empty document.
+     */
+    ParagraphCache() {
+        insert(0, 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    CachedParagraph get(int paragraph) {
+        final int block = blockOf(paragraph);
+        return blocks.get(block).paragraphs.get(paragraph - blockStart);
+    }
+
+    /**
+     * Inserts count new dirty paragraphs at paragraph.
+     */
+    void insert(int paragraph, int count) {
+        if (paragraph < 0 || paragraph > size) throw new IndexOutOfBoundsException("Paragraph " + paragraph + " out of bounds for size " + size);
+        if (count <= 0) return;
+        final List<CachedParagraph> inserted = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) inserted.add(new CachedParagraph());
+
+        if (blocks.isEmpty()) {
+            blocks.add(new Block(new ArrayList<>(inserted)));
+        } else {
+            // Appending goes into the last block
+            final int block = paragraph == size ? blocks.size() - 1 : blockOf(paragraph);
+            final int start = paragraph == size ? size - blocks.get(block).paragraphs.size() : blockStart;
+            blocks.get(block).paragraphs.addAll(paragraph - start, inserted);
+            splitIfLarge(block);
+        }
+        size += count;
+    }
+
+    /**
+     * Removes count paragraphs starting at paragraph.
+     */
+    void remove(int paragraph, int count) {
+        if (paragraph < 0 || count < 0 || paragraph + count > size) throw new IndexOutOfBoundsException("Paragraphs " + paragraph + " + " + count + " out of bounds for size " + size);
+        if (count == 0) return;
+        int block = blockOf(paragraph), offset = paragraph - blockStart;
+        int remaining = count;
+        while (remaining > 0) {
+            final Block current = blocks.get(block);
+            final int end = Math.min(current.paragraphs.size(), offset + remaining);
+            final List<CachedParagraph> removed = current.paragraphs.subList(offset, end);
+            for (CachedParagraph cached : removed) {
+                if (cached.compiled.hasOutputLine()) current.outputLines--;
+                current.errorLength -= cached.errorText.length();
+            }
+            remaining -= removed.size();
+            removed.clear();
+
+            if (current.paragraphs.isEmpty()) blocks.remove(block);
+            else block++;
+            offset = 0;
+        }
+        size -= count;
+    }
+
+    void setCompiled(int paragraph, CompiledLine compiled) {
+        final Block block = blocks.get(blockOf(paragraph));
+        final CachedParagraph cached = block.paragraphs.get(paragraph - blockStart);
+        if (cached.compiled.hasOutputLine()) block.outputLines--;
+        if (compiled.hasOutputLine()) block.outputLines++;
+        cached.compiled = compiled;
+    }
+
+    void setErrorText(int paragraph, String errorText) {
+        final Block block = blocks.get(blockOf(paragraph));
+        final CachedParagraph cached = block.paragraphs.get(paragraph - blockStart);
+        block.errorLength += errorText.length() - cached.errorText.length();
+        cached.errorText = errorText;
+    }
+
+    /**
+     * @return How many of the paragraphs before paragraph have an output line, which is the output line of paragraph if it has one.
+     */
+    int outputLinesBefore(int paragraph) {
+        int outputLines = 0, start = 0;
+        for (Block block : blocks) {
+            final int blockSize = block.paragraphs.size();
+            if (paragraph < start + blockSize) {
+                for (int i = 0; i < paragraph - start; i++)
+                    if (block.paragraphs.get(i).compiled.hasOutputLine()) outputLines++;
+                return outputLines;
+            }
+            outputLines += block.outputLines;
+            start += blockSize;
+        }
+        return outputLines;
+    }
+
+    /**
+     * @return The total length of the error text of the paragraphs before paragraph, which is where its error text starts.
+     */
+    int errorLengthBefore(int paragraph) {
+        int errorLength = 0, start = 0;
+        for (Block block : blocks) {
+            final int blockSize = block.paragraphs.size();
+            if (paragraph < start + blockSize) {
+                for (int i = 0; i < paragraph - start; i++)
+                    errorLength += block.paragraphs.get(i).errorText.length();
+                return errorLength;
+            }
+            errorLength += block.errorLength;
+            start += blockSize;
+        }
+        return errorLength;
+    }
+
+    /**
+     * Calls action with every paragraph at or after fromParagraph that has error text, and its index, in order.
+     * Blocks without error text are skipped as a whole.
+     */
+    void forEachWithErrors(int fromParagraph, ObjIntConsumer<CachedParagraph> action) {
+        int start = 0;
+        for (Block block : blocks) {
+            final int blockSize = block.paragraphs.size();
+            if (block.errorLength > 0 && fromParagraph < start + blockSize) {
+                for (int i = Math.max(0, fromParagraph - start); i < blockSize; i++) {
+                    final CachedParagraph cached = block.paragraphs.get(i);
+                    if (!cached.errorText.isEmpty()) action.accept(cached, start + i);
+                }
+            }
+            start += blockSize;
+        }
+    }
+
+    /**
+     * @return The index of the block containing paragraph, also setting {@link ParagraphCache#blockStart}.
+     */
+    private int blockOf(int paragraph) {
+        if (paragraph < 0 || paragraph >= size) throw new IndexOutOfBoundsException("Paragraph " + paragraph + " out of bounds for size " + size);
+        int start = 0;
+        for (int block = 0; block < blocks.size(); block++) {
+            final int blockSize = blocks.get(block).paragraphs.size();
+            if (paragraph < start + blockSize) {
+                blockStart = start;
+                return block;
+            }
+            start += blockSize;
+        }
+        throw new IllegalStateException("Paragraph " + paragraph + " not found in any block!");
+    }
+
+    /**
+     * Splits a block that grew over {@link ParagraphCache#MAX_BLOCK_SIZE} into blocks of {@link ParagraphCache#BLOCK_SIZE}.
+     */
+    private void splitIfLarge(int block) {
+        final List<CachedParagraph> paragraphs = blocks.get(block).paragraphs;
+        if (paragraphs.size() <= MAX_BLOCK_SIZE) return;
+        final List<Block> split = new ArrayList<>(paragraphs.size() / BLOCK_SIZE + 1);
+        for (int from = 0; from < paragraphs.size(); from += BLOCK_SIZE)
+            split.add(new Block(new ArrayList<>(paragraphs.subList(from, Math.min(paragraphs.size(), from + BLOCK_SIZE)))));
+        blocks.remove(block);
+        blocks.addAll(block, split);
+    }
+}
@@ -1,12 +1,12 @@
 package net.arna.jojowrite.node;
 
-import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.scene.control.*;
 import javafx.scene.effect.BlendMode;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.VBox;
 import javafx.scene.paint.Paint;
 import javafx.scene.shape.Line;
 import javafx.stage.Stage;
@@ -14,16 +14,26 @@ import net.arna.jojowrite.DialogHelper;
 import net.arna.jojowrite.JJWUtils;
 import net.arna.jojowrite.JoJoWriteApplication;
 import net.arna.jojowrite.JoJoWriteController;
+import net.arna.jojowrite.rom.RomMatcher;
+import net.arna.jojowrite.rom.RomSearch;
+import org.fxmisc.richtext.MultiChangeBuilder;
 import org.fxmisc.richtext.StyleClassedTextArea;
+import org.fxmisc.richtext.model.StyleSpans;
 import org.fxmisc.richtext.util.UndoUtils;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import static net.arna.jojowrite.TextStyles.*;
 
 public class ROMArea extends StyleClassedTextArea {
     boolean writingOriginal = false;
-    private String originalText = "";
+    /**
+     * The text last shown via {@link ROMArea#showWindow(long, String, StyleSpans)}, which the area differs from once the user types over it.
+     */
+    private String windowText = "";
 
     private long address = 0x00000000;
 
@@ -32,6 +42,24 @@ public class ROMArea extends StyleClassedTextArea {
     private final Line[] lines = new Line[NUM_LINES];
 
     private final TextInputDialog findDialog = DialogHelper.createFindDialog("Find Hex string", "");
+    private static final ButtonType FIND_ALL = new ButtonType("Find All", ButtonBar.ButtonData.OTHER);
+    /**
+     * Stops "Find All" from filling the results list with millions of entries for patterns like "????".
+     */
+    private static final int MAX_FIND_RESULTS = 10000;
+    private final ListView<Long> findResults = new ListView<>();
+    private final Label findStatus = new Label();
+    /**
+     * Switches the find dialog from byte patterns to instruction templates such as "JSR @R?".
+     */
+    private final CheckBox instructionSearch = new CheckBox("Instruction");
+    private static final String HEX_SEARCH_PROMPT = "e.g. D1?? 410B", INSTRUCTION_SEARCH_PROMPT = "e.g. MOV.L @(disp,PC),R?";
+    private int findResultsLength = 0;
+    private RomSearch findAllSearch = null, findNextSearch = null;
+    /**
+     * Incremented whenever a "Find All" search starts or is cancelled, results of older searches still queued on the FX thread are discarded.
+     */
+    private long findAllGeneration = 0;
     private final TextInputDialog goToDialog = DialogHelper.createStyledTextInputDialog("Go to", "");
 
     private ScrollBar scrollBar;
@@ -179,21 +207,92 @@ public class ROMArea extends StyleClassedTextArea {
         final TextField findDialogEditor = findDialog.getEditor();
         findDialogEditor.getStyleClass().add("main");
         findDialogEditor.setMaxWidth(Double.POSITIVE_INFINITY);
-        findDialogEditor.setTextFormatter(JJWUtils.hexadecimalTextFormatter());
+        findDialogEditor.setTextFormatter(JJWUtils.maskedHexadecimalTextFormatter());
+        findDialogEditor.setPromptText(HEX_SEARCH_PROMPT);
+        instructionSearch.getStyleClass().add("main");
+        instructionSearch.selectedProperty().addListener((observable, wasSelected, selected) -> {
+            // Templates contain more than hex digits, so they're only validated once compiled
+            findDialogEditor.setTextFormatter(selected ? null : JJWUtils.maskedHexadecimalTextFormatter());
+            findDialogEditor.clear();
+            findDialogEditor.setPromptText(selected ? INSTRUCTION_SEARCH_PROMPT : HEX_SEARCH_PROMPT);
+        });
         final Button nextButton = (Button) findDialogPane.lookupButton(ButtonType.NEXT);
         nextButton.addEventFilter(ActionEvent.ACTION,
                 event -> {
                     event.consume();
-                    String hexStr = findDialogEditor.getText();
-                    if (hexStr.isEmpty()) return;
+                    RomMatcher matcher = compileFindPattern(findDialogEditor.getText());
+                    if (matcher == null) return;
                     int selectedLocalByte = Math.min(getAnchor(), getCaretPosition()) / 2; // 2 characters -> 1 byte
 
-                    Platform.runLater(() -> // Find next
-                            JoJoWriteController.getInstance().findAndDisplayInROM(hexStr, getAddress() + selectedLocalByte + 1)
+                    if (findNextSearch != null) findNextSearch.cancel();
+                    findNextSearch = JoJoWriteController.getInstance().findAndDisplayInROM(matcher, getAddress() + selectedLocalByte + 1);
+                }
+        );
+        findDialogPane.getButtonTypes().add(FIND_ALL);
+        final Button findAllButton = (Button) findDialogPane.lookupButton(FIND_ALL);
+        findAllButton.addEventFilter(ActionEvent.ACTION,
+                event -> {
+                    event.consume();
+                    if (findAllSearch != null) { // Doubles as the cancel button while searching
+                        cancelFindAll();
+                        findStatus.setText("Cancelled, " + findResults.getItems().size() + " hits");
+                        findAllButton.setText(FIND_ALL.getText());
+                        return;
+                    }
+
+                    RomMatcher matcher = compileFindPattern(findDialogEditor.getText());
+                    if (matcher == null) return;
+                    findResults.getItems().clear();
+                    findResultsLength = matcher.length() * 2; // 2 characters -> 1 byte
+
+                    final long generation = ++findAllGeneration;
+                    findAllSearch = JoJoWriteController.getInstance().findAllInROM(matcher, MAX_FIND_RESULTS,
+                            hits -> {
+                                if (generation != findAllGeneration) return;
+                                addFindResults(hits);
+                                findStatus.setText("Searching... " + findResults.getItems().size() + " hits");
+                            },
+                            () -> {
+                                if (generation != findAllGeneration) return;
+                                findAllSearch = null;
+                                final int hitCount = findResults.getItems().size();
+                                findStatus.setText(hitCount >= MAX_FIND_RESULTS ? "Stopped at " + hitCount + " hits" : hitCount + " hits");
+                                findAllButton.setText(FIND_ALL.getText());
+                            }
                     );
+                    if (findAllSearch == null) return;
+                    findStatus.setText("Searching...");
+                    findAllButton.setText("Cancel");
                 }
         );
-        findDialog.setGraphic(null);
+        findDialog.setOnHidden(event -> {
+            if (findNextSearch != null) findNextSearch.cancel();
+            if (findAllSearch == null) return;
+            cancelFindAll();
+            findStatus.setText("");
+            findAllButton.setText(FIND_ALL.getText());
+        });
+        findDialog.setGraphic(null); // Rebuilds the dialog content, so it must be replaced afterwards
+
+        findResults.getStyleClass().add("main");
+        findResults.setPrefHeight(200.0);
+        findResults.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(Long address, boolean empty) {
+                super.updateItem(address, empty);
+                if (empty || address == null) {
+                    setText(null);
+                } else {
+                    String hex = Long.toHexString(address);
+                    setText(("00000000" + hex).substring(hex.length()));
+                }
+            }
+        });
+        findResults.getSelectionModel().selectedItemProperty().addListener((observable, oldAddress, address) -> {
+            if (address == null) return;
+            JoJoWriteController.getInstance().showInROM(address.intValue(), findResultsLength);
+        });
+        findDialogPane.setContent(new VBox(findDialogPane.getContent(), instructionSearch, findResults, findStatus));
         findDialogPane.setMinWidth(600.0);
 
         // Styling for Go To Dialog
@@ -204,6 +303,33 @@ public class ROMArea extends StyleClassedTextArea {
         goToDialog.setGraphic(null);
     }
 
+    /**
+     * @return The matcher for the find dialogs input, or null if it is empty or invalid.
+     */
+    private RomMatcher compileFindPattern(String pattern) {
+        if (pattern.isBlank()) return null;
+        final JoJoWriteController controller = JoJoWriteController.getInstance();
+        return instructionSearch.isSelected() ? controller.compileInstructionSearch(pattern) : controller.compileSearch(pattern);
+    }
+
+    private void cancelFindAll() {
+        findAllSearch.cancel();
+        findAllSearch = null;
+        findAllGeneration++;
+    }
+
+    /**
+     * Inserts a batch of hits from {@link RomSearch#findAll}, keeping the results sorted by address.
+     * A batch is sorted and covers a single segment of the ROM, so it is inserted as a whole.
+     */
+    private void addFindResults(long[] hits) {
+        final List<Long> items = findResults.getItems();
+        final int index = -Collections.binarySearch(items, hits[0]) - 1;
+        final List<Long> batch = new ArrayList<>(hits.length);
+        for (long hit : hits) batch.add(hit);
+        items.addAll(index, batch);
+    }
+
     private boolean validateText(String text) {
         return JJWUtils.isHexadecimal(text) || writingOriginal;
     }
@@ -212,14 +338,63 @@ public class ROMArea extends StyleClassedTextArea {
         this.writingOriginal = writingOriginal;
     }
 
-    public void restoreOriginal() {
-        replace(0, getLength(), originalText, BASIC_TEXT);
+    /**
+     * Shows the bytes at newAddress, keeping the part of the current text that overlaps them.
+     * When scrolling by whole rows, only the rows leaving and entering the viewport are replaced, in a single change;
+     * other jumps, or text the user typed over, replace everything at once.
+     * @param text The hex to display, with Overwrites applied.
+     * @param style Styling of the entire text, applied as one batch. May be null if text is empty.
+     */
+    public void showWindow(long newAddress, String text, StyleSpans<Collection<String>> style) {
+        final String current = getText();
+        final long shift = (newAddress - address) * 2; // In characters
+        writingOriginal = true;
+
+        if (!current.equals(windowText)) {
+            replaceText(0, current.length(), text);
+        } else if (shift >= 0) {
+            // [shift, shift + overlap) of the old window becomes [0, overlap) of the new one
+            final long overlap = Math.min(current.length() - shift, text.length());
+            if (overlap > 0 && current.regionMatches((int) shift, text, 0, (int) overlap)) {
+                replaceEnds((int) (shift + overlap), current.length(), text.substring((int) overlap), 0, (int) shift, "");
+            } else {
+                replaceText(0, current.length(), text);
+            }
+        } else {
+            // [0, overlap) of the old window becomes [-shift, -shift + overlap) of the new one
+            final long overlap = Math.min(text.length() + shift, current.length());
+            if (overlap > 0 && text.regionMatches((int) -shift, current, 0, (int) overlap)) {
+                replaceEnds((int) overlap, current.length(), text.substring((int) (overlap - shift)), 0, 0, text.substring(0, (int) -shift));
+            } else {
+                replaceText(0, current.length(), text);
+            }
+        }
+        if (style != null) setStyleSpans(0, style);
+
+        writingOriginal = false;
+        address = newAddress;
+        windowText = text;
+        resetUndoManager();
+    }
+
+    /**
+     * Replaces [tailStart, tailEnd) with tail and [headStart, headEnd) with head as a single change, skipping empty replacements.
+     * The tail comes first, so the head positions stay valid.
+     */
+    private void replaceEnds(int tailStart, int tailEnd, String tail, int headStart, int headEnd, String head) {
+        final boolean replaceTail = tailStart != tailEnd || !tail.isEmpty(), replaceHead = headStart != headEnd || !head.isEmpty();
+        if (!replaceTail && !replaceHead) return;
+
+        final MultiChangeBuilder<Collection<String>, String, Collection<String>> change = createMultiChange(2);
+        if (replaceTail) change.replaceText(tailStart, tailEnd, tail);
+        if (replaceHead) change.replaceText(headStart, headEnd, head);
+        change.commit();
     }
 
     @Override
     public void clear() {
         writingOriginal = true;
-        originalText = "";
+        windowText = "";
         super.clear();
         writingOriginal = false;
     }
@@ -236,10 +411,7 @@ public class ROMArea extends StyleClassedTextArea {
     @Override
     public void append(String text, String styleClass) {
         super.append(text, styleClass);
-        if (writingOriginal) {
-            originalText += text;
-            resetUndoManager();
-        }
+        if (writingOriginal) resetUndoManager();
     }
 
     @Override
@@ -1,22 +1,35 @@
 package net.arna.jojowrite.node;
 
 import javafx.geometry.Orientation;
-import javafx.scene.Node;
 import javafx.scene.control.ScrollBar;
+import javafx.scene.input.ScrollEvent;
 import javafx.scene.layout.HBox;
 import net.arna.jojowrite.JJWUtils;
 import net.arna.jojowrite.JoJoWriteController;
+import net.arna.jojowrite.overwrite.OverwriteStore;
+import net.arna.jojowrite.rom.RomImage;
+import net.arna.jojowrite.rom.RomPageCache;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.util.Collection;
+import java.util.Collections;
 
 import static net.arna.jojowrite.TextStyles.BASIC_TEXT;
 import static net.arna.jojowrite.TextStyles.OVERWRITTEN_TEXT;
 
 public class ROMBox extends HBox {
+    /**
+     * How many {@link RomPageCache#PAGE_SIZE} byte pages of the ROM are kept encoded, configurable via -Djojowrite.romPageCachePages.
+     */
+    private static final int CACHED_PAGES = Integer.getInteger("jojowrite.romPageCachePages", 64);
+
     private final ScrollBar scrollBar;
     private final ROMArea area;
-    private RandomAccessFile romRAF;
+    private final DisassemblyArea disassembly;
+    private RomImage rom;
+    private RomPageCache pageCache;
 
     public ROMBox() {
         /*
@@ -30,7 +43,12 @@ public class ROMBox extends HBox {
         scrollBar.setOrientation(Orientation.VERTICAL);
         scrollBar.getStyleClass().add("scroll-pane");
 
-        getChildren().addAll(area, scrollBar);
+        disassembly = new DisassemblyArea();
+        disassembly.getStyleClass().add("code-area");
+        disassembly.setPrefWidth(300);
+        disassembly.setMinWidth(0);
+
+        getChildren().addAll(area, scrollBar, disassembly);
 
         area.setScrollBar(scrollBar);
         area.widthProperty().addListener(
@@ -40,9 +58,20 @@ public class ROMBox extends HBox {
                 }
         );
 
+        // The disassembly follows the hex view, so scrolling it scrolls the ROM instead
+        disassembly.addEventFilter(ScrollEvent.ANY, event -> {
+            if (event.getDeltaY() > 0) scrollBar.decrement();
+            else scrollBar.increment();
+            event.consume();
+        });
+        disassembly.heightProperty().addListener(
+                (observable, oldValue, newValue) -> disassembly.refresh(JoJoWriteController.getInstance().overwrites.getStore())
+        );
+
         scrollBar.valueProperty().addListener(
                 (observable, oldValue, newValue) -> {
-                    long romLength = JoJoWriteController.getInstance().files.get(JJWUtils.FileType.ROM).length() - area.getByteCapacity();
+                    if (rom == null) return;
+                    long romLength = rom.length() - area.getByteCapacity();
                     if (scrollBar.getMax() != romLength) {
                         //System.out.println("Incorrect romScrollBar maximum detected!");
                         scrollBar.setMax(romLength);
@@ -50,7 +79,6 @@ public class ROMBox extends HBox {
 
                     try {
                         displayROMAt(newValue.intValue());
-                        displayOverwrites(JoJoWriteController.getInstance().overwrites);
                     } catch (IOException e) {
                         JJWUtils.printException(e, "Something went wrong while displaying ROM file!");
                     }
@@ -68,74 +96,92 @@ public class ROMBox extends HBox {
         return area;
     }
 
+    public DisassemblyArea getDisassembly() {
+        return disassembly;
+    }
+
     public ScrollBar getScrollBar() {
         return scrollBar;
     }
 
-    public RandomAccessFile getRomRAF() {
-        return romRAF;
+    public RomImage getRom() {
+        return rom;
     }
 
-    public void setRomRAF(RandomAccessFile romRAF) {
-        this.romRAF = romRAF;
-        try {
-            scrollBar.setMax(romRAF.length() - area.getByteCapacity());
-        } catch (IOException e) {
-            JJWUtils.printException(e, "Failed to read romRAF length!");
-        }
+    /**
+     * @return The cache of the displayed ROM, null if none is open. Its hit and miss counts help size {@link ROMBox#CACHED_PAGES}.
+     */
+    public RomPageCache getPageCache() {
+        return pageCache;
     }
 
+    public void setRom(RomImage rom) {
+        this.rom = rom;
+        pageCache = rom == null ? null : new RomPageCache(rom, CACHED_PAGES);
+        disassembly.setRom(rom);
+        if (rom != null) scrollBar.setMax(rom.length() - area.getByteCapacity());
+    }
+
+    /**
+     * Displays the ROM from address onwards, with all {@link JoJoWriteController#overwrites} applied.
+     */
     public void displayROMAt(long address) throws IOException {
         if (address < 0) {
             return;
         }
-        if (romRAF == null) {
-            System.out.println("Tried to ROMBox#displayROMAt() with null romRAF!");
+        if (rom == null) {
+            System.out.println("Tried to ROMBox#displayROMAt() with null rom!");
             return;
         }
 
-        area.setAddress(address);
-        area.clear();
-
-        byte[] bytes = new byte[area.getByteCapacity()];
-        if (address > romRAF.length()) {
+        if (address > rom.length()) {
             throw new IOException("Attempted to read outside file bounds!");
         }
 
-        romRAF.seek(address);
-        int bytesRead = romRAF.read(bytes);
-        if (bytesRead != -1) {
-            byte[] newBytes = new byte[bytesRead];
-            System.arraycopy(bytes, 0, newBytes, 0, bytesRead);
-            //System.out.println("Read " + bytesRead + " bytes.");
+        display(address, JoJoWriteController.getInstance().overwrites.getStore());
+    }
 
-            area.setWritingOriginal(true);
-            area.append(JJWUtils.bytesToHex(newBytes), BASIC_TEXT);
-            area.setWritingOriginal(false);
-        }
+    /**
+     * Redisplays the current address with overwrites applied, discarding any temporary changes.
+     */
+    public void displayOverwrites(final OverwriteStore overwrites) {
+        if (rom == null) return;
+        display(area.getAddress(), overwrites);
     }
 
-    public void displayOverwrites(final OverwriteBox overwrites) {
-        long address = area.getAddress();
-
-        for (Node node : overwrites.getChildren()) {
-            if (node instanceof Overwrite overwrite) {
-                var byteMap = overwrite.getByteStrings();
-                int overwriteAddress = overwrite.getAddress();
-                for (int i = 0; i < byteMap.size(); i++) {
-                    // Bytes
-                    // If we ever wish to support larger file sizes, all that is required is that overwrite addresses are also longs, then we downcast the subtraction.
-                    int byteTextAddress = overwriteAddress - (int) address + i; // Relativize
-                    if (byteTextAddress < 0) continue;
-                    if (byteTextAddress >= area.getLength() / 2) continue;
-
-                    // Characters (2/Byte)
-                    int characterIndex = byteTextAddress * 2;
-                    area.replace(characterIndex, characterIndex + 2, byteMap.get(i), OVERWRITTEN_TEXT);
+    /**
+     * Builds the hex of the viewport with overwrites applied, and hands it to the {@link ROMArea} as a single update.
+     */
+    private void display(long address, OverwriteStore overwrites) {
+        StringBuilder original = new StringBuilder();
+        pageCache.appendHex(address, area.getByteCapacity(), original);
+        char[] text = new char[original.length()];
+        original.getChars(0, text.length, text, 0);
+        boolean[] overwritten = new boolean[text.length / 2];
+
+        byte[] overwrittenBytes = new byte[overwritten.length];
+        overwrites.applyTo(address, overwrittenBytes, overwritten);
+        for (int i = 0; i < overwritten.length; i++) {
+            if (!overwritten[i]) continue;
+            // Characters (2/Byte)
+            text[i * 2] = (char) JJWUtils.HEX_ARRAY[(overwrittenBytes[i] >> 4) & 0xF];
+            text[i * 2 + 1] = (char) JJWUtils.HEX_ARRAY[overwrittenBytes[i] & 0xF];
+        }
+
+        StyleSpans<Collection<String>> style = null;
+        if (text.length != 0) {
+            StyleSpansBuilder<Collection<String>> styleBuilder = new StyleSpansBuilder<>();
+            int runStart = 0;
+            for (int i = 1; i <= overwritten.length; i++) {
+                if (i == overwritten.length || overwritten[i] != overwritten[runStart]) {
+                    styleBuilder.add(Collections.singleton(overwritten[runStart] ? OVERWRITTEN_TEXT : BASIC_TEXT), (i - runStart) * 2);
+                    runStart = i;
                 }
             }
+            style = styleBuilder.create();
         }
 
-        area.resetUndoManager();
+        area.showWindow(address, new String(text), style);
+        disassembly.display(address, overwrites);
     }
 }
@@ -0,0 +1,302 @@
+package net.arna.jojowrite.overwrite;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+
+/**
+ * An overwrite file in the binary format, an alternative to the text format of {@link OverwriteStore}.
+ * Every overwrite is read straight from its fixed-size record and packed sections, and the ones writing to a range of addresses
+ * are found via the sorted address index, so nothing has to be parsed or hex-decoded. Converting between both formats is lossless.
+ * <p>
+ * A file is either {@link OverwriteFile#read(File) read} in one piece, or {@link OverwriteFile#open(File) opened},
+ * in which case only the header is read and every lookup reads what it needs through the channel.
+ * Neither memory-maps the file, as a mapped file can't be replaced on Windows until the mapping is garbage collected,
+ * which would break saving over the file that was just opened.
+ * <p>
+ * Binary overwrite files use the same {@link net.arna.jojowrite.JJWUtils#OVERWRITE_FILE_EXTENSION} and are told apart by their magic, see {@link OverwriteFile#isBinary(File)}.
+ * <p>
+ * Layout, all big-endian:
+ * <pre>
+ * int    magic, version
+ * int    overwrite count, longest payload length
+ * int    payloads size, comments size
+ * record overwrites in file order: int address, int payload offset, int comment offset
+ * entry  address index: int address, int position, sorted by unsigned address, then position
+ * byte[] payloads, packed in file order
+ * byte[] comments, UTF-8, packed in file order
+ * </pre>
+ * Offsets are relative to the start of their section. Each payload and comment ends where the next one starts, or at the end of its section.
+ */
+public final class OverwriteFile implements Closeable {
+    private static final int MAGIC = 0x4A4A574F; // JJWO
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 6 * 4;
+    private static final int RECORD_SIZE = 3 * 4, INDEX_ENTRY_SIZE = 2 * 4;
+
+    /**
+     * The entire file when read, otherwise null.
+     */
+    private final ByteBuffer contents;
+    /**
+     * The open file when opened, otherwise null.
+     */
+    private final FileChannel channel;
+    private final int size, maxLength, payloadsSize, commentsSize;
+    private final int recordsOffset, indexOffset, payloadsOffset, commentsOffset;
+
+    private OverwriteFile(ByteBuffer contents, FileChannel channel, ByteBuffer header) {
+        this.contents = contents;
+        this.channel = channel;
+        this.size = header.getInt(8);
+        this.maxLength = header.getInt(12);
+        this.payloadsSize = header.getInt(16);
+        this.commentsSize = header.getInt(20);
+        this.recordsOffset = HEADER_SIZE;
+        this.indexOffset = recordsOffset + size * RECORD_SIZE;
+        this.payloadsOffset = indexOffset + size * INDEX_ENTRY_SIZE;
+        this.commentsOffset = payloadsOffset + payloadsSize;
+    }
+
+    /**
+     * @return Whether file starts with the magic of the binary format. False if it can't be read, like any text file.
+     */
+    public static boolean isBinary(File file) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads all of file, checking its header and that its sections fit within it.
+     * @throws IOException If file isn't a binary overwrite file of this version.
+     */
+    public static OverwriteFile read(File file) throws IOException {
+        final ByteBuffer contents;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE)
+                throw new IOException("Not a binary overwrite file: " + file);
+
+            contents = ByteBuffer.allocate((int) fileSize);
+            readFully(channel, contents, 0);
+        }
+        checkHeader(contents, contents.capacity(), file);
+        return new OverwriteFile(contents, null, contents);
+    }
+
+    /**
+     * Opens file for lookups, only reading and checking its header.
+     * Overwrites and {@link OverwriteFile#positionsIn(long, long)} are read through the channel on demand, until the OverwriteFile is closed.
+     * @throws IOException If file isn't a binary overwrite file of this version.
+     */
+    public static OverwriteFile open(File file) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            final long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) throw new IOException("Not a binary overwrite file: " + file);
+
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            checkHeader(header, fileSize, file);
+            return new OverwriteFile(null, channel, header);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void checkHeader(ByteBuffer header, long fileSize, File file) throws IOException {
+        if (header.getInt(0) != MAGIC) throw new IOException("Not a binary overwrite file: " + file);
+        if (header.getInt(4) != VERSION) throw new IOException("Unsupported binary overwrite file version " + header.getInt(4) + ": " + file);
+
+        final int size = header.getInt(8), maxLength = header.getInt(12), payloadsSize = header.getInt(16), commentsSize = header.getInt(20);
+        if (size < 0 || maxLength < 0 || payloadsSize < 0 || commentsSize < 0
+                || HEADER_SIZE + (long) size * (RECORD_SIZE + INDEX_ENTRY_SIZE) + payloadsSize + commentsSize != fileSize)
+            throw new IOException("Corrupt binary overwrite file: " + file);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getAddress(int position) {
+        return getInt(recordsOffset + checkPosition(position) * RECORD_SIZE);
+    }
+
+    public int getLength(int position) {
+        checkPosition(position);
+        return payloadOffset(position + 1) - payloadOffset(position);
+    }
+
+    /**
+     * @return A copy of the bytes of the overwrite at position.
+     */
+    public byte[] getBytes(int position) {
+        final int offset = payloadOffset(checkPosition(position));
+        final byte[] bytes = new byte[payloadOffset(position + 1) - offset];
+        get(payloadsOffset + offset, bytes);
+        return bytes;
+    }
+
+    public String getComment(int position) {
+        final int offset = commentOffset(checkPosition(position));
+        final byte[] utf8 = new byte[commentOffset(position + 1) - offset];
+        get(commentsOffset + offset, utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param position May be size, for the end of the last payload.
+     */
+    private int payloadOffset(int position) {
+        return position == size ? payloadsSize : getInt(recordsOffset + position * RECORD_SIZE + 4);
+    }
+
+    /**
+     * @param position May be size, for the end of the last comment.
+     */
+    private int commentOffset(int position) {
+        return position == size ? commentsSize : getInt(recordsOffset + position * RECORD_SIZE + 8);
+    }
+
+    /**
+     * Only looks at the address index entries starting within the longest payload length before fromAddress.
+     * @return The positions of all overwrites writing to [fromAddress, toAddress), in ascending order.
+     */
+    public int[] positionsIn(long fromAddress, long toAddress) {
+        int[] found = new int[8];
+        int count = 0;
+        if (fromAddress < toAddress) {
+            for (int entry = firstEntryAtOrAfter(fromAddress - maxLength + 1); entry < size; entry++) {
+                final long start = Integer.toUnsignedLong(getInt(indexOffset + entry * INDEX_ENTRY_SIZE));
+                if (start >= toAddress) break;
+                final int position = getInt(indexOffset + entry * INDEX_ENTRY_SIZE + 4);
+                if (start + getLength(position) <= fromAddress) continue;
+                if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                found[count++] = position;
+            }
+        }
+        found = Arrays.copyOf(found, count);
+        Arrays.sort(found);
+        return found;
+    }
+
+    /**
+     * @return The first address index entry whose address is at or after address, or size if there is none.
+     */
+    private int firstEntryAtOrAfter(long address) {
+        int low = 0, high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (Integer.toUnsignedLong(getInt(indexOffset + middle * INDEX_ENTRY_SIZE)) < address) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    private int getInt(int offset) {
+        if (contents != null) return contents.getInt(offset);
+        final ByteBuffer buffer = ByteBuffer.allocate(4);
+        readAt(buffer, offset);
+        return buffer.getInt(0);
+    }
+
+    private void get(int offset, byte[] dst) {
+        if (contents != null) contents.get(offset, dst);
+        else readAt(ByteBuffer.wrap(dst), offset);
+    }
+
+    private void readAt(ByteBuffer dst, int offset) {
+        try {
+            readFully(channel, dst, offset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer dst, long offset) throws IOException {
+        while (dst.hasRemaining()) {
+            final int read = channel.read(dst, offset);
+            if (read == -1) throw new EOFException("Binary overwrite file was truncated while reading!");
+            offset += read;
+        }
+    }
+
+    /**
+     * Writes every overwrite of store to file in the binary format.
+     * Written to a temporary file first, so a failed write never leaves a partial file behind.
+     * @throws IOException If the overwrites don't fit in a single buffer, or file can't be written.
+     */
+    public static void write(OverwriteStore store, File file) throws IOException {
+        final int size = store.size();
+        final byte[][] utf8Comments = new byte[size][];
+        long payloadsSize = 0, commentsSize = 0;
+        int maxLength = 0;
+        for (int position = 0; position < size; position++) {
+            final String comment = store.getComment(position);
+            utf8Comments[position] = comment == null ? new byte[0] : comment.getBytes(StandardCharsets.UTF_8);
+            payloadsSize += store.getLength(position);
+            commentsSize += utf8Comments[position].length;
+            maxLength = Math.max(maxLength, store.getLength(position));
+        }
+        final long fileSize = HEADER_SIZE + (long) size * (RECORD_SIZE + INDEX_ENTRY_SIZE) + payloadsSize + commentsSize;
+        if (fileSize > Integer.MAX_VALUE) throw new IOException("Too many overwrites for a binary overwrite file: " + file);
+
+        final long[] sortedPositions = new long[size];
+        for (int position = 0; position < size; position++)
+            sortedPositions[position] = Integer.toUnsignedLong(store.getAddress(position)) << 31 | position;
+        Arrays.sort(sortedPositions);
+
+        final ByteBuffer buffer = ByteBuffer.allocate((int) fileSize);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(maxLength).putInt((int) payloadsSize).putInt((int) commentsSize);
+        int payloadOffset = 0, commentOffset = 0;
+        for (int position = 0; position < size; position++) {
+            buffer.putInt(store.getAddress(position)).putInt(payloadOffset).putInt(commentOffset);
+            payloadOffset += store.getLength(position);
+            commentOffset += utf8Comments[position].length;
+        }
+        for (long sortedPosition : sortedPositions) {
+            final int position = (int) (sortedPosition & Integer.MAX_VALUE);
+            buffer.putInt(store.getAddress(position)).putInt(position);
+        }
+        for (int position = 0; position < size; position++)
+            buffer.put(store.getBytes(position));
+        for (byte[] utf8Comment : utf8Comments)
+            buffer.put(utf8Comment);
+        buffer.flip();
+
+        final Path path = file.toPath();
+        final Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        boolean written = false;
+        try {
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+                channel.force(false);
+            }
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+            written = true;
+        } finally {
+            if (!written) Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * Closes the channel of an {@link OverwriteFile#open(File) opened} file, after which it can't be read from. Does nothing for a read file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) channel.close();
+    }
+
+    private int checkPosition(int position) {
+        if (position < 0 || position >= size) throw new IndexOutOfBoundsException("Overwrite position " + position + " out of bounds for size " + size);
+        return position;
+    }
+}
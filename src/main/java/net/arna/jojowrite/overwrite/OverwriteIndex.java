@@ -0,0 +1,188 @@
+package net.arna.jojowrite.overwrite;
+
+import java.util.Arrays;
+
+/**
+ * An address-ordered index of the byte ranges of a list of overwrites, so only the overwrites intersecting a ROM range are visited.
+ * Overwrites are identified by their position in the list, which also decides which of two overlapping overwrites wins: the later one, like when patching.
+ * <p>
+ * Ranges are kept sorted by start address in primitive arrays, with a max-end segment tree on top of them.
+ * Inserting or removing an overwrite is a linear array copy, a query costs O(log n) per overwrite found.
+ * <p>
+ * Not thread-safe, meant to be used from the FX thread.
+ */
+public final class OverwriteIndex {
+    /**
+     * [starts[i], ends[i]) is the range of the overwrite at positions[i], sorted by start.
+     */
+    private long[] starts, ends;
+    private int[] positions;
+    private int size = 0;
+
+    /**
+     * maxEnds[node] is the largest end within the nodes range of the sorted arrays, where node 1 covers [0, leafCount).
+     * Rebuilt on the next query after any change.
+     */
+    private long[] maxEnds = new long[0];
+    private int leafCount = 0;
+    private boolean treeDirty = true;
+
+    public OverwriteIndex() {
+        this(16);
+    }
+
+    public OverwriteIndex(int capacity) {
+        capacity = Math.max(1, capacity);
+        starts = new long[capacity];
+        ends = new long[capacity];
+        positions = new int[capacity];
+    }
+
+    /**
+     * Builds an index of count overwrites at once, the overwrite at position i covering [addresses[i], addresses[i] + lengths[i]).
+     */
+    public static OverwriteIndex of(int[] addresses, int[] lengths, int count) {
+        final OverwriteIndex index = new OverwriteIndex(count);
+        final long[] sortedPositions = new long[count];
+        for (int i = 0; i < count; i++)
+            sortedPositions[i] = Integer.toUnsignedLong(addresses[i]) << 31 | i;
+        Arrays.sort(sortedPositions);
+
+        for (int i = 0; i < count; i++) {
+            final int position = (int) (sortedPositions[i] & Integer.MAX_VALUE);
+            index.starts[i] = Integer.toUnsignedLong(addresses[position]);
+            index.ends[i] = index.starts[i] + lengths[position];
+            index.positions[i] = position;
+        }
+        index.size = count;
+        return index;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+        treeDirty = true;
+    }
+
+    /**
+     * Inserts an overwrite at position, moving every overwrite at or after it down by one.
+     */
+    public void insert(int position, int address, int length) {
+        if (position < size) shiftPositions(position, 1); // Positions are [0, size), so appending shifts nothing
+        add(position, address, length);
+    }
+
+    /**
+     * Removes the overwrite at position, moving every overwrite after it up by one.
+     */
+    public void remove(int position) {
+        removeAt(indexOfPosition(position));
+        shiftPositions(position + 1, -1);
+    }
+
+    /**
+     * Moves the overwrite at position to its new range.
+     */
+    public void update(int position, int address, int length) {
+        removeAt(indexOfPosition(position));
+        add(position, address, length);
+    }
+
+    /**
+     * @return The positions of all overwrites intersecting [fromAddress, toAddress), in ascending order.
+     */
+    public int[] query(long fromAddress, long toAddress) {
+        if (treeDirty) buildTree();
+        final int end = firstStartAtOrAfter(toAddress);
+        int[] found = new int[8];
+        int count = 0;
+        if (end > 0 && fromAddress < toAddress) {
+            final int[] stack = new int[64];
+            int stackSize = 0;
+            stack[stackSize++] = 1;
+            while (stackSize > 0) {
+                final int node = stack[--stackSize];
+                if (maxEnds[node] <= fromAddress) continue;
+                // The range of the node, in sorted indices
+                final int depth = 31 - Integer.numberOfLeadingZeros(node);
+                final int width = leafCount >>> depth;
+                final int first = (node - (1 << depth)) * width;
+                if (first >= end) continue;
+                if (width == 1) {
+                    if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                    found[count++] = positions[first];
+                    continue;
+                }
+                stack[stackSize++] = node * 2 + 1;
+                stack[stackSize++] = node * 2;
+            }
+        }
+        found = Arrays.copyOf(found, count);
+        Arrays.sort(found);
+        return found;
+    }
+
+    private void add(int position, int address, int length) {
+        if (size == starts.length) {
+            final int capacity = size * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+        }
+        final long start = Integer.toUnsignedLong(address);
+        final int index = firstStartAtOrAfter(start + 1); // After any equal starts
+        System.arraycopy(starts, index, starts, index + 1, size - index);
+        System.arraycopy(ends, index, ends, index + 1, size - index);
+        System.arraycopy(positions, index, positions, index + 1, size - index);
+        starts[index] = start;
+        ends[index] = start + length;
+        positions[index] = position;
+        size++;
+        treeDirty = true;
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(starts, index + 1, starts, index, size - index - 1);
+        System.arraycopy(ends, index + 1, ends, index, size - index - 1);
+        System.arraycopy(positions, index + 1, positions, index, size - index - 1);
+        size--;
+        treeDirty = true;
+    }
+
+    private int indexOfPosition(int position) {
+        for (int i = 0; i < size; i++)
+            if (positions[i] == position) return i;
+        throw new IllegalArgumentException("No overwrite at position " + position + " in index!");
+    }
+
+    private void shiftPositions(int fromPosition, int delta) {
+        for (int i = 0; i < size; i++)
+            if (positions[i] >= fromPosition) positions[i] += delta;
+    }
+
+    /**
+     * @return The first sorted index whose start is at or after address, or size if there is none.
+     */
+    private int firstStartAtOrAfter(long address) {
+        int low = 0, high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (starts[middle] < address) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    private void buildTree() {
+        leafCount = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        if (maxEnds.length < leafCount * 2) maxEnds = new long[leafCount * 2];
+        Arrays.fill(maxEnds, 0, leafCount * 2, Long.MIN_VALUE);
+        System.arraycopy(ends, 0, maxEnds, leafCount, size);
+        for (int node = leafCount - 1; node > 0; node--)
+            maxEnds[node] = Math.max(maxEnds[node * 2], maxEnds[node * 2 + 1]);
+        treeDirty = false;
+    }
+}
@@ -0,0 +1,299 @@
+package net.arna.jojowrite.overwrite;
+
+import net.arna.jojowrite.JJWUtils;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.DoubleConsumer;
+
+/**
+ * The overwrites of an overwrite file, in file order: an address, the bytes written there, and a comment each.
+ * Stored in parallel arrays rather than as objects, and indexed by address via an {@link OverwriteIndex}.
+ * <p>
+ * This is what patching, the ROM view and saving read from; {@link net.arna.jojowrite.node.Overwrite} nodes only display and edit entries of it.
+ * <p>
+ * Text format, one overwrite per line:
+ * <pre>
+ * ADDRESS;HEX BYTES;COMMENT
+ * </pre>
+ * Overwrite files may also be in the binary format of {@link OverwriteFile}, which {@link OverwriteStore#read(File)} detects.
+ * Not thread-safe. Stores shown in the UI must only be modified on the FX thread.
+ */
+public final class OverwriteStore {
+    public static final char SEPARATOR = ';';
+    /**
+     * How many lines are read between progress reports.
+     */
+    private static final int PROGRESS_INTERVAL = 4096;
+
+    /**
+     * Reads overwrite files one at a time, in the background.
+     */
+    private static final ExecutorService readExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "OverwriteStore-Reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private int[] addresses;
+    private byte[][] payloads;
+    private String[] comments;
+    private int size = 0;
+    private OverwriteIndex index;
+    /**
+     * False while reading a file, whose index is built once all overwrites are read.
+     */
+    private boolean indexing = true;
+
+    public OverwriteStore() {
+        this(16);
+    }
+
+    public OverwriteStore(int capacity) {
+        capacity = Math.max(1, capacity);
+        addresses = new int[capacity];
+        payloads = new byte[capacity][];
+        comments = new String[capacity];
+        index = new OverwriteIndex(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getAddress(int position) {
+        return addresses[checkPosition(position)];
+    }
+
+    /**
+     * @return The bytes of the overwrite at position, which must not be modified.
+     */
+    public byte[] getBytes(int position) {
+        return payloads[checkPosition(position)];
+    }
+
+    public int getLength(int position) {
+        return payloads[checkPosition(position)].length;
+    }
+
+    public String getComment(int position) {
+        return comments[checkPosition(position)];
+    }
+
+    public void add(int address, byte[] bytes, String comment) {
+        insert(size, address, bytes, comment);
+    }
+
+    /**
+     * Inserts an overwrite at position, moving every overwrite at or after it down by one.
+     */
+    public void insert(int position, int address, byte[] bytes, String comment) {
+        if (position < 0 || position > size) throw new IndexOutOfBoundsException("Overwrite position " + position + " out of bounds for size " + size);
+        if (size == addresses.length) {
+            final int capacity = size * 2;
+            addresses = Arrays.copyOf(addresses, capacity);
+            payloads = Arrays.copyOf(payloads, capacity);
+            comments = Arrays.copyOf(comments, capacity);
+        }
+        System.arraycopy(addresses, position, addresses, position + 1, size - position);
+        System.arraycopy(payloads, position, payloads, position + 1, size - position);
+        System.arraycopy(comments, position, comments, position + 1, size - position);
+        addresses[position] = address;
+        payloads[position] = bytes;
+        comments[position] = comment;
+        size++;
+        if (indexing) index.insert(position, address, bytes.length);
+    }
+
+    public void remove(int position) {
+        checkPosition(position);
+        System.arraycopy(addresses, position + 1, addresses, position, size - position - 1);
+        System.arraycopy(payloads, position + 1, payloads, position, size - position - 1);
+        System.arraycopy(comments, position + 1, comments, position, size - position - 1);
+        size--;
+        payloads[size] = null;
+        comments[size] = null;
+        index.remove(position);
+    }
+
+    public void clear() {
+        Arrays.fill(payloads, 0, size, null);
+        Arrays.fill(comments, 0, size, null);
+        size = 0;
+        index.clear();
+    }
+
+    public void setAddress(int position, int address) {
+        addresses[checkPosition(position)] = address;
+        index.update(position, address, payloads[position].length);
+    }
+
+    /**
+     * @param bytes Kept as-is, must not be modified afterwards.
+     */
+    public void setBytes(int position, byte[] bytes) {
+        payloads[checkPosition(position)] = bytes;
+        index.update(position, addresses[position], bytes.length);
+    }
+
+    public void setComment(int position, String comment) {
+        comments[checkPosition(position)] = comment;
+    }
+
+    /**
+     * @return The first position of an overwrite at address, or -1 if there is none.
+     */
+    public int indexOfAddress(int address) {
+        for (int position = 0; position < size; position++)
+            if (addresses[position] == address) return position;
+        return -1;
+    }
+
+    /**
+     * @return The positions of all overwrites writing to [fromAddress, toAddress), in ascending order.
+     */
+    public int[] positionsIn(long fromAddress, long toAddress) {
+        return index.query(fromAddress, toAddress);
+    }
+
+    /**
+     * Applies every overwrite intersecting [startAddress, startAddress + window.length) to window, in order, so later overwrites win like when patching.
+     * @param overwritten Set to true for every byte of window that was overwritten, may be null.
+     */
+    public void applyTo(long startAddress, byte[] window, boolean[] overwritten) {
+        for (int position : positionsIn(startAddress, startAddress + window.length)) {
+            final byte[] bytes = payloads[position];
+            final long relativeAddress = Integer.toUnsignedLong(addresses[position]) - startAddress;
+            final int from = (int) Math.max(0, -relativeAddress), to = (int) Math.min(bytes.length, window.length - relativeAddress);
+            System.arraycopy(bytes, from, window, (int) (relativeAddress + from), to - from);
+            if (overwritten != null) Arrays.fill(overwritten, (int) (relativeAddress + from), (int) (relativeAddress + to), true);
+        }
+    }
+
+    /**
+     * @return The overwrite at position in the text format, without a line break.
+     */
+    public String toString(int position) {
+        final String address = Integer.toHexString(getAddress(position));
+        return "00000000".substring(address.length()) + address + SEPARATOR + JJWUtils.bytesToHex(payloads[position]) + SEPARATOR + comments[position];
+    }
+
+    /**
+     * Parses and appends a single line of the text format.
+     * The comment is everything after the second separator, and may be omitted along with it.
+     * @throws IllegalArgumentException If the line has no separator, or its address or bytes aren't valid hex.
+     */
+    public void addLine(String line) {
+        final int bytesStart = line.indexOf(SEPARATOR) + 1;
+        if (bytesStart == 0) throw new IllegalArgumentException("Invalid string for generating Overwrite; " + line);
+        int bytesEnd = line.indexOf(SEPARATOR, bytesStart);
+        final String comment = bytesEnd == -1 ? "" : line.substring(bytesEnd + 1);
+        if (bytesEnd == -1) bytesEnd = line.length();
+
+        final String addressText = line.substring(0, bytesStart - 1), byteText = line.substring(bytesStart, bytesEnd);
+        if (!addressText.isEmpty() && (addressText.length() > 8 || !JJWUtils.isHexadecimal(addressText)))
+            throw new IllegalArgumentException("Invalid Overwrite address; " + line);
+        if (byteText.length() % 2 != 0 || (!byteText.isEmpty() && !JJWUtils.isHexadecimal(byteText)))
+            throw new IllegalArgumentException("Invalid Overwrite bytes; " + line);
+
+        add(addressText.isEmpty() ? 0 : Integer.parseUnsignedInt(addressText, 16), JJWUtils.hexStringToBytes(byteText), comment);
+    }
+
+    /**
+     * Reads an entire overwrite file in the text format. Empty lines are skipped, invalid ones are reported and skipped.
+     */
+    public static OverwriteStore read(BufferedReader reader) throws IOException {
+        return read(reader, 0, null);
+    }
+
+    /**
+     * Reads an entire overwrite file in the text format, see {@link OverwriteStore#read(BufferedReader)}.
+     * @param length The length of the file in characters, to report progress relative to.
+     * @param onProgress Called every few thousand lines with the fraction of length read so far, may be null.
+     */
+    public static OverwriteStore read(BufferedReader reader, long length, DoubleConsumer onProgress) throws IOException {
+        final OverwriteStore store = new OverwriteStore(1024);
+        store.indexing = false;
+        long charsRead = 0;
+        String line;
+        for (int lineNumber = 1; (line = reader.readLine()) != null; lineNumber++) {
+            charsRead += line.length() + 1;
+            if (onProgress != null && length > 0 && lineNumber % PROGRESS_INTERVAL == 0)
+                onProgress.accept(Math.min(1.0, (double) charsRead / length));
+            if (line.isEmpty()) continue;
+            try {
+                store.addLine(line);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Skipping line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        store.rebuildIndex();
+        return store;
+    }
+
+    public static OverwriteStore read(File file) throws IOException {
+        return read(file, null);
+    }
+
+    /**
+     * Reads an entire overwrite file in either format.
+     * @param onProgress See {@link OverwriteStore#read(BufferedReader, long, DoubleConsumer)}, not called for binary files.
+     */
+    public static OverwriteStore read(File file, DoubleConsumer onProgress) throws IOException {
+        if (OverwriteFile.isBinary(file)) return read(OverwriteFile.read(file));
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            return read(reader, file.length(), onProgress);
+        }
+    }
+
+    /**
+     * Copies every overwrite of a binary overwrite file.
+     */
+    public static OverwriteStore read(OverwriteFile file) {
+        final OverwriteStore store = new OverwriteStore(file.size());
+        store.indexing = false;
+        for (int position = 0; position < file.size(); position++)
+            store.add(file.getAddress(position), file.getBytes(position), file.getComment(position));
+        store.rebuildIndex();
+        return store;
+    }
+
+    /**
+     * Reads file on a background thread, so the store can be handed to the FX thread in one piece once it is complete.
+     * @param onProgress Called on the background thread, see {@link OverwriteStore#read(BufferedReader, long, DoubleConsumer)}.
+     * @return A future completing with the store, or exceptionally if the file can't be read.
+     */
+    public static CompletableFuture<OverwriteStore> readAsync(File file, DoubleConsumer onProgress) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return read(file, onProgress);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, readExecutor);
+    }
+
+    /**
+     * Writes every overwrite in the text format, each followed by a line break.
+     */
+    public void write(Writer writer) throws IOException {
+        for (int position = 0; position < size; position++)
+            writer.append(toString(position)).append('\n');
+    }
+
+    private void rebuildIndex() {
+        final int[] lengths = new int[size];
+        for (int position = 0; position < size; position++)
+            lengths[position] = payloads[position].length;
+        index = OverwriteIndex.of(addresses, lengths, size);
+        indexing = true;
+    }
+
+    private int checkPosition(int position) {
+        if (position < 0 || position >= size) throw new IndexOutOfBoundsException("Overwrite position " + position + " out of bounds for size " + size);
+        return position;
+    }
+}
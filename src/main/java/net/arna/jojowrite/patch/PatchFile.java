@@ -0,0 +1,47 @@
+package net.arna.jojowrite.patch;
+
+import net.arna.jojowrite.JJWUtils.FileType;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.arna.jojowrite.JJWUtils.ASSEMBLY_FILE_EXTENSION;
+import static net.arna.jojowrite.JJWUtils.OVERWRITE_FILE_EXTENSION;
+
+/**
+ * The parsed contents of a .patch file.
+ * The first line is the source ROM, followed by the .x16asm and .overwrite files to apply (in order), and optionally the output ROM.
+ * @param sourceROM The unmodified ROM the patch is applied to.
+ * @param entries The files to apply, in the order they're listed; later files overwrite earlier ones.
+ * @param outROM The last line that isn't an Assembly or Overwrite file, or null if there is none.
+ */
+public record PatchFile(File sourceROM, List<Entry> entries, File outROM) {
+    public record Entry(File file, FileType type) {}
+
+    public static PatchFile read(File patch) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(patch))) {
+            final String sourceROMPath = br.readLine();
+            if (sourceROMPath == null) throw new IOException("Patch file is empty: " + patch);
+
+            final List<Entry> entries = new ArrayList<>();
+            File outROM = null;
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                if (line.endsWith(OVERWRITE_FILE_EXTENSION)) {
+                    entries.add(new Entry(new File(line), FileType.OVERWRITE));
+                } else if (line.endsWith(ASSEMBLY_FILE_EXTENSION)) {
+                    entries.add(new Entry(new File(line), FileType.ASSEMBLY));
+                } else {
+                    outROM = new File(line);
+                }
+            }
+
+            return new PatchFile(new File(sourceROMPath), List.copyOf(entries), outROM);
+        }
+    }
+}
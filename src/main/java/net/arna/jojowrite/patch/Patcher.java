@@ -0,0 +1,208 @@
+package net.arna.jojowrite.patch;
+
+import net.arna.jojowrite.asm.Assembler;
+import net.arna.jojowrite.asm.CompiledLine;
+import net.arna.jojowrite.asm.Compiler;
+import net.arna.jojowrite.overwrite.OverwriteStore;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.util.List;
+
+/**
+ * Applies a {@link PatchFile} to a copy of its source ROM.
+ * Shared by the UI ({@link net.arna.jojowrite.JoJoWriteController#patchROM()}) and the headless {@link net.arna.jojowrite.PatchLauncher}.
+ */
+public final class Patcher {
+    /**
+     * @param romLength Size of the output ROM, in bytes.
+     * @param bytesWritten Amount of bytes written by the patch files, on top of copying the source ROM.
+     */
+    public record Result(long romLength, long bytesWritten) {}
+
+    private Patcher() {}
+
+    /**
+     * Copies the source ROM to outROM, then applies every Assembly and Overwrite file of the patch in order.
+     * The patch is written to a temporary file next to outROM which then replaces it, so a failed patch never leaves a half-written ROM behind.
+     * Requires the assembly definitions to be loaded via {@link Compiler#loadAssemblyDefinitions(InputStream)}.
+     * @throws IllegalStateException If a file contains Assembly that doesn't compile.
+     */
+    public static Result patch(PatchFile patch, File outROM) throws IOException {
+        final File sourceROM = patch.sourceROM();
+        if (!sourceROM.exists()) throw new FileNotFoundException("Couldn't locate source ROM for patching: " + sourceROM);
+
+        System.out.println("Patching ROM " + sourceROM + "->" + outROM + "...");
+        final Path outPath = outROM.toPath().toAbsolutePath();
+        final Path tempPath = outPath.resolveSibling(outPath.getFileName() + ".tmp");
+        boolean patched = false;
+        try {
+            System.out.println("Copying src ROM -> out ROM...");
+            copy(sourceROM.toPath(), tempPath);
+            System.out.println("Copy complete.");
+
+            final Result result;
+            try (RomWriter outRom = new RomWriter(tempPath)) {
+                long bytesWritten = 0;
+                for (PatchFile.Entry entry : patch.entries()) {
+                    final File toApply = entry.file();
+                    bytesWritten += switch (entry.type()) {
+                        case ASSEMBLY -> applyAssembly(toApply, outRom);
+                        case OVERWRITE -> applyOverwrites(toApply, outRom);
+                        default -> throw new IllegalStateException("Non-Assembly/Overwrite file found in patch entries!");
+                    };
+                    System.out.println("Applied " + toApply);
+                }
+                result = new Result(outRom.length(), bytesWritten);
+            }
+
+            replace(tempPath, outPath);
+            patched = true;
+            System.out.println("Patching complete.");
+            return result;
+        } finally {
+            if (!patched) Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * Copies source to target via {@link FileChannel#transferTo(long, long, WritableByteChannel)}, which lets the OS copy the bytes without them passing through the Java heap.
+     */
+    private static void copy(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final long size = in.size();
+            long position = 0;
+            while (position < size)
+                position += in.transferTo(position, size - position, out);
+        }
+    }
+
+    /**
+     * Moves the finished patch into place, atomically if the file system supports it.
+     */
+    private static void replace(Path patched, Path outPath) throws IOException {
+        try {
+            Files.move(patched, outPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(patched, outPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Compiles the entire file first, and refuses to write any of it if a line fails.
+     * @return The amount of bytes written.
+     */
+    private static long applyAssembly(File toApply, RomWriter outRom) throws IOException {
+        final List<String> lines = Files.readAllLines(toApply.toPath());
+        final CompiledLine[] compiledLines = Assembler.assemble(lines);
+
+        for (int i = 0; i < compiledLines.length; i++) {
+            final CompiledLine compiled = compiledLines[i];
+            if (!compiled.diagnostics().isEmpty())
+                throw new IllegalStateException("Tried to write unparsable Assembly to ROM! " + toApply + " Ln. " + (i + 1) + ": " + compiled.diagnostics().get(0).getMessage());
+        }
+
+        long bytesWritten = 0;
+        for (int i = 0; i < compiledLines.length; i++) {
+            final CompiledLine compiled = compiledLines[i];
+            if (!compiled.isCompiled()) {
+                final String line = lines.get(i);
+                if (!line.isEmpty() && !line.startsWith(Compiler.COMMENT_PREFIX))
+                    System.out.println("Address with no instruction; " + line);
+                continue;
+            }
+
+            outRom.writeShort(Integer.parseUnsignedInt(compiled.addressStr().substring(2), 16), compiled.opcode()); // Removing the "06"
+            bytesWritten += 2;
+        }
+        return bytesWritten;
+    }
+
+    /**
+     * @return The amount of bytes written.
+     */
+    private static long applyOverwrites(File toApply, RomWriter outRom) throws IOException {
+        final OverwriteStore overwrites = OverwriteStore.read(toApply);
+        long bytesWritten = 0;
+        for (int position = 0; position < overwrites.size(); position++) {
+            final byte[] overwriteBytes = overwrites.getBytes(position);
+            outRom.write(Integer.toUnsignedLong(overwrites.getAddress(position)), overwriteBytes);
+            bytesWritten += overwriteBytes.length;
+        }
+        return bytesWritten;
+    }
+
+    /**
+     * Writes to a ROM file of fixed length through a {@link FileChannel}, rather than a writable mapping which can't be released on demand.
+     * Consecutive writes (such as the instructions of an Assembly file) are gathered in a heap buffer and written in one go.
+     */
+    private static final class RomWriter implements Closeable {
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        private final FileChannel channel;
+        private final long length;
+        private final ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE);
+        /**
+         * The address the first pending byte is written to.
+         */
+        private long pendingAddress = 0;
+
+        private RomWriter(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.length = channel.size();
+        }
+
+        public long length() {
+            return length;
+        }
+
+        public void write(long address, byte[] src) throws IOException {
+            checkWriteBounds(address, src.length);
+            if (pending.position() > 0 && (address != pendingAddress + pending.position() || src.length > pending.remaining())) flush();
+            if (src.length > pending.capacity()) {
+                writeFully(ByteBuffer.wrap(src), address);
+                return;
+            }
+            if (pending.position() == 0) pendingAddress = address;
+            pending.put(src);
+        }
+
+        /**
+         * Writes a big-endian 16-bit value, such as compiled machine code.
+         */
+        public void writeShort(long address, int value) throws IOException {
+            write(address, new byte[] { (byte) (value >> 8), (byte) value });
+        }
+
+        private void checkWriteBounds(long address, int byteCount) {
+            if (address < 0 || address + byteCount > length)
+                throw new IndexOutOfBoundsException("Attempted to write " + byteCount + " bytes outside ROM bounds at: " + Long.toHexString(address));
+        }
+
+        private void flush() throws IOException {
+            pending.flip();
+            writeFully(pending, pendingAddress);
+            pending.clear();
+        }
+
+        private void writeFully(ByteBuffer src, long address) throws IOException {
+            while (src.hasRemaining())
+                address += channel.write(src, address);
+        }
+
+        /**
+         * Writes any pending bytes and flushes them to the storage device, then closes the channel.
+         */
+        @Override
+        public void close() throws IOException {
+            try (channel) {
+                if (pending.position() > 0) flush();
+                channel.force(false);
+            }
+        }
+    }
+}
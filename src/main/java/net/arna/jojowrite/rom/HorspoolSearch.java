@@ -0,0 +1,50 @@
+package net.arna.jojowrite.rom;
+
+import java.util.Arrays;
+
+/**
+ * Boyer-Moore-Horspool search for an exact byte pattern within a {@link RomImage}.
+ * Compares the last byte of the pattern first and skips ahead by up to the patterns length on a mismatch,
+ * so longer patterns are found in fewer reads than there are bytes in the searched range.
+ */
+public final class HorspoolSearch implements RomMatcher {
+    private final byte[] pattern;
+    /**
+     * How far the pattern may shift, keyed by the ROM byte aligned with the patterns last byte.
+     */
+    private final int[] shifts = new int[256];
+
+    public HorspoolSearch(byte[] pattern) {
+        if (pattern.length == 0) throw new IllegalArgumentException("Cannot search for an empty pattern!");
+        this.pattern = pattern.clone();
+
+        final int last = pattern.length - 1;
+        Arrays.fill(shifts, pattern.length);
+        for (int i = 0; i < last; i++)
+            shifts[pattern[i] & 0xFF] = last - i;
+    }
+
+    @Override
+    public int length() {
+        return pattern.length;
+    }
+
+    @Override
+    public long indexOf(RomImage rom, long fromAddress, long toAddress) {
+        final int last = pattern.length - 1;
+        final byte lastByte = pattern[last];
+        final long lastStart = Math.min(toAddress - 1, rom.length() - pattern.length);
+
+        int address = (int) Math.max(0, fromAddress);
+        while (address <= lastStart) {
+            final byte alignedByte = rom.get(address + last);
+            if (alignedByte == lastByte) {
+                int i = last - 1;
+                while (i >= 0 && rom.get(address + i) == pattern[i]) i--;
+                if (i < 0) return address;
+            }
+            address += shifts[alignedByte & 0xFF];
+        }
+        return -1;
+    }
+}
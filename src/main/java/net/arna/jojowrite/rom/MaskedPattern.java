@@ -0,0 +1,133 @@
+package net.arna.jojowrite.rom;
+
+/**
+ * A byte pattern in which individual nibbles may be wildcards, like the VARIABLE {@link net.arna.jojowrite.asm.instruction.Fragment}s of an instruction.
+ * A ROM byte b matches pattern byte i when (b & masks[i]) == values[i].
+ * <p>
+ * Candidates are compared 8 bytes at a time, as (word ^ valueWord) & maskWord == 0.
+ */
+public final class MaskedPattern implements RomMatcher {
+    public static final char WILDCARD = '?';
+
+    private final byte[] values, masks;
+    /**
+     * values and masks packed into big-endian longs, the last one padded with wildcards.
+     */
+    private final long[] valueWords, maskWords;
+
+    /**
+     * @param values The expected bits of every byte, 0 wherever masks is 0.
+     * @param masks Which bits of every byte are compared.
+     */
+    public MaskedPattern(byte[] values, byte[] masks) {
+        if (values.length == 0) throw new IllegalArgumentException("Cannot search for an empty pattern!");
+        if (values.length != masks.length) throw new IllegalArgumentException("Pattern values and masks differ in length!");
+        this.values = new byte[values.length];
+        this.masks = masks.clone();
+        for (int i = 0; i < values.length; i++)
+            this.values[i] = (byte) (values[i] & masks[i]);
+
+        final int wordCount = (values.length + 7) / 8;
+        valueWords = new long[wordCount];
+        maskWords = new long[wordCount];
+        for (int i = 0; i < values.length; i++) {
+            final int shift = (7 - i % 8) * 8;
+            valueWords[i / 8] |= (this.values[i] & 0xFFL) << shift;
+            maskWords[i / 8] |= (this.masks[i] & 0xFFL) << shift;
+        }
+    }
+
+    /**
+     * Parses pairs of hex digits, where {@link MaskedPattern#WILDCARD} matches any nibble and whitespace is ignored.
+     * For example, "D1?? 410B 0009" matches MOV.L @(disp,PC),R1 with any displacement followed by JSR @R1 and NOP.
+     * @throws IllegalArgumentException If the pattern is empty, contains other characters, or has an uneven amount of digits.
+     */
+    public static MaskedPattern parse(String pattern) {
+        final StringBuilder nibbles = new StringBuilder(pattern.length());
+        for (int i = 0; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            if (Character.isWhitespace(c)) continue;
+            if (c != WILDCARD && Character.digit(c, 16) == -1)
+                throw new IllegalArgumentException("Invalid character in pattern: " + c);
+            nibbles.append(c);
+        }
+        if (nibbles.length() % 2 == 1) throw new IllegalArgumentException("Uneven digit count in Hex byte string!");
+
+        final int byteCount = nibbles.length() / 2;
+        final byte[] values = new byte[byteCount], masks = new byte[byteCount];
+        for (int i = 0; i < nibbles.length(); i++) {
+            final char c = nibbles.charAt(i);
+            if (c == WILDCARD) continue;
+            final int shift = i % 2 == 0 ? 4 : 0;
+            values[i / 2] |= Character.digit(c, 16) << shift;
+            masks[i / 2] |= 0xF << shift;
+        }
+        return new MaskedPattern(values, masks);
+    }
+
+    /**
+     * @return Whether this pattern contains no wildcards.
+     */
+    public boolean isExact() {
+        for (byte mask : masks)
+            if (mask != (byte) 0xFF) return false;
+        return true;
+    }
+
+    /**
+     * @return The expected bits of every byte, 0 for wildcards.
+     */
+    public byte[] getValues() {
+        return values.clone();
+    }
+
+    public byte[] getMasks() {
+        return masks.clone();
+    }
+
+    @Override
+    public int length() {
+        return values.length;
+    }
+
+    @Override
+    public long indexOf(RomImage rom, long fromAddress, long toAddress) {
+        final long lastStart = Math.min(toAddress - 1, rom.length() - values.length);
+        // Past this address, loading every word would read beyond the end of the ROM
+        final long lastWordStart = rom.length() - valueWords.length * 8L;
+        final long firstValueWord = valueWords[0], firstMaskWord = maskWords[0];
+
+        for (int address = (int) Math.max(0, fromAddress); address <= lastStart; address++) {
+            if (address <= lastWordStart) {
+                if (((rom.getLong(address) ^ firstValueWord) & firstMaskWord) == 0 && matchesWords(rom, address)) return address;
+            } else if (matchesBytes(rom, address)) {
+                return address;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matchesWords(RomImage rom, int address) {
+        for (int i = 1; i < valueWords.length; i++)
+            if (((rom.getLong(address + i * 8) ^ valueWords[i]) & maskWords[i]) != 0) return false;
+        return true;
+    }
+
+    private boolean matchesBytes(RomImage rom, int address) {
+        for (int i = 0; i < values.length; i++)
+            if ((rom.get(address + i) & masks[i]) != values[i]) return false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder out = new StringBuilder(values.length * 2);
+        for (int i = 0; i < values.length; i++) {
+            for (int shift = 4; shift >= 0; shift -= 4) {
+                final boolean wildcard = ((masks[i] >> shift) & 0xF) == 0;
+                out.append(wildcard ? WILDCARD : Character.forDigit((values[i] >> shift) & 0xF, 16));
+            }
+        }
+        return out.toString();
+    }
+}
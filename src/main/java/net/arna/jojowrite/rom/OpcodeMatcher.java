@@ -0,0 +1,83 @@
+package net.arna.jojowrite.rom;
+
+/**
+ * Finds 2-byte aligned 16-bit words (SH-2 instructions) that match any of several value/mask pairs, as (word & mask) == value.
+ * Reads 4 words at a time and tests all of them against a pattern at once (SWAR), only looking at individual words once a block contains a match.
+ */
+public final class OpcodeMatcher implements RomMatcher {
+    private static final long LOW_BITS = 0x0001000100010001L, HIGH_BITS = 0x8000800080008000L;
+
+    private final int[] values, masks;
+    /**
+     * values and masks repeated across all 4 words of a long.
+     */
+    private final long[] valueLanes, maskLanes;
+    private final String description;
+
+    /**
+     * @param description Shown by {@link OpcodeMatcher#toString()}, e.g. the template the patterns were compiled from.
+     */
+    public OpcodeMatcher(int[] values, int[] masks, String description) {
+        if (values.length == 0) throw new IllegalArgumentException("Cannot search for an empty pattern!");
+        if (values.length != masks.length) throw new IllegalArgumentException("Pattern values and masks differ in length!");
+        this.values = new int[values.length];
+        this.masks = new int[values.length];
+        this.valueLanes = new long[values.length];
+        this.maskLanes = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            this.masks[i] = masks[i] & 0xFFFF;
+            this.values[i] = values[i] & this.masks[i];
+            valueLanes[i] = this.values[i] * LOW_BITS;
+            maskLanes[i] = this.masks[i] * LOW_BITS;
+        }
+        this.description = description;
+    }
+
+    @Override
+    public int length() {
+        return 2;
+    }
+
+    @Override
+    public long indexOf(RomImage rom, long fromAddress, long toAddress) {
+        long address = Math.max(0, fromAddress);
+        if (address % 2 == 1) address++;
+        final long lastStart = Math.min(toAddress - 1, rom.length() - 2);
+
+        for (; address <= lastStart && address + 8 <= rom.length(); address += 8) {
+            final long block = rom.getLong((int) address);
+            if (!containsMatch(block)) continue;
+            for (int word = 0; word < 4; word++) {
+                final long wordAddress = address + word * 2L;
+                if (wordAddress > lastStart) return -1;
+                if (matches((int) (block >>> (48 - word * 16)) & 0xFFFF)) return wordAddress;
+            }
+        }
+        for (; address <= lastStart; address += 2) {
+            if (matches((rom.get((int) address) & 0xFF) << 8 | rom.get((int) address + 1) & 0xFF)) return address;
+        }
+        return -1;
+    }
+
+    /**
+     * @return Whether any of the 4 words in block matches any pattern; a word matches if it is all zeroes after (word ^ value) & mask.
+     */
+    private boolean containsMatch(long block) {
+        for (int i = 0; i < valueLanes.length; i++) {
+            final long difference = (block ^ valueLanes[i]) & maskLanes[i];
+            if (((difference - LOW_BITS) & ~difference & HIGH_BITS) != 0) return true;
+        }
+        return false;
+    }
+
+    private boolean matches(int word) {
+        for (int i = 0; i < values.length; i++)
+            if ((word & masks[i]) == values[i]) return true;
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
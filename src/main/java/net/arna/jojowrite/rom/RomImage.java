@@ -0,0 +1,89 @@
+package net.arna.jojowrite.rom;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A ROM file mapped into memory, so random access is a memory load rather than a seek and read per chunk.
+ * Only absolute (index based) buffer operations are used, so reading from several threads at once is safe.
+ * <p>
+ * ROMs are limited to 2GB, the maximum size of a single mapping.
+ * Mappings are read-only; {@link net.arna.jojowrite.patch.Patcher} writes patched ROMs through a {@link FileChannel} instead,
+ * as a writable mapping would keep the file from being moved into place on Windows until it is garbage collected.
+ */
+public final class RomImage implements Closeable {
+    private final File file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int length;
+
+    private RomImage(File file, FileChannel channel) throws IOException {
+        final long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("ROM files larger than 2GB are not supported: " + file);
+        }
+
+        this.file = file;
+        this.channel = channel;
+        this.length = (int) size;
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+    }
+
+    /**
+     * Maps an existing ROM for reading.
+     */
+    public static RomImage openReadOnly(File file) throws IOException {
+        return new RomImage(file, FileChannel.open(file.toPath(), StandardOpenOption.READ));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public byte get(int address) {
+        return buffer.get(address);
+    }
+
+    /**
+     * @return The 8 bytes starting at address as a big-endian long.
+     */
+    public long getLong(int address) {
+        return buffer.getLong(address);
+    }
+
+    /**
+     * @return A read-only view of the entire ROM, with its own position and limit.
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        return buffer.asReadOnlyBuffer().clear();
+    }
+
+    /**
+     * @return Up to byteCount bytes starting at address, fewer if the ROM ends first.
+     */
+    public byte[] read(long address, int byteCount) {
+        if (address < 0) throw new IndexOutOfBoundsException("Negative ROM address: " + address);
+        final byte[] bytes = new byte[(int) Math.max(0, Math.min(byteCount, length - address))];
+        buffer.get((int) address, bytes);
+        return bytes;
+    }
+
+    /**
+     * Closes the underlying channel.
+     * The mapping may still be in use elsewhere, it is released once this RomImage is garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
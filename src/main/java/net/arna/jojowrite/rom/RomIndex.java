@@ -0,0 +1,286 @@
+package net.arna.jojowrite.rom;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32C;
+
+/**
+ * An on-disk index of every 3-byte sequence (3-gram) in a ROM, so patterns containing 3 consecutive fixed bytes are found
+ * by checking the few addresses their rarest 3-gram occurs at, rather than scanning the whole ROM.
+ * <p>
+ * The index is stored next to the ROM as "rom file name" + {@link RomIndex#FILE_EXTENSION} and keyed by the ROMs CRC32C,
+ * so it is rebuilt whenever the ROM changes. It takes up 4 bytes per ROM byte (plus a fixed 4MB), and is memory-mapped rather than loaded.
+ * <p>
+ * Layout, all big-endian:
+ * <pre>
+ * int    magic, version
+ * long   ROM length, ROM CRC32C
+ * int[]  bucket offsets, BUCKET_COUNT + 1 entries
+ * int[]  addresses, ascending within each bucket
+ * </pre>
+ * 3-grams are hashed into buckets, so a bucket may contain addresses of several 3-grams; every candidate is verified against the ROM.
+ */
+public final class RomIndex implements Closeable {
+    public static final String FILE_EXTENSION = ".jjwidx";
+
+    private static final int MAGIC = 0x4A4A5749; // JJWI
+    private static final int VERSION = 1;
+    private static final int GRAM_LENGTH = 3;
+    private static final int BUCKET_BITS = 20, BUCKET_COUNT = 1 << BUCKET_BITS;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+    private static final long ADDRESSES_OFFSET = HEADER_SIZE + (BUCKET_COUNT + 1) * 4L;
+    /**
+     * How many addresses {@link RomIndex#build} collects on the heap before writing them, unless a single bucket is larger.
+     */
+    private static final int CHUNK_ADDRESSES = 1 << 24;
+    /**
+     * The entire index has to fit in a single mapping.
+     */
+    public static final long MAX_ROM_LENGTH = (Integer.MAX_VALUE - ADDRESSES_OFFSET) / 4;
+
+    /**
+     * Builds indices one at a time, in the background.
+     */
+    private static final ExecutorService buildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RomIndex-Builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final FileChannel channel;
+    private final IntBuffer bucketOffsets, addresses;
+
+    private RomIndex(FileChannel channel, MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.bucketOffsets = buffer.slice(HEADER_SIZE, (BUCKET_COUNT + 1) * 4).asIntBuffer();
+        this.addresses = buffer.slice((int) ADDRESSES_OFFSET, buffer.capacity() - (int) ADDRESSES_OFFSET).asIntBuffer();
+    }
+
+    public static File indexFileOf(File romFile) {
+        return new File(romFile.getPath() + FILE_EXTENSION);
+    }
+
+    /**
+     * Loads the index of rom on a background thread, (re)building it first if it is missing or outdated.
+     * @return A future completing with the index, or exceptionally if the ROM is too large or the index can't be written.
+     */
+    public static CompletableFuture<RomIndex> loadOrBuildAsync(RomImage rom) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return loadOrBuild(rom);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, buildExecutor);
+    }
+
+    public static RomIndex loadOrBuild(RomImage rom) throws IOException {
+        if (rom.length() > MAX_ROM_LENGTH)
+            throw new IOException("ROM is too large to be indexed: " + rom.getFile());
+
+        final long checksum = checksumOf(rom);
+        final Path indexPath = indexFileOf(rom.getFile()).toPath();
+        if (Files.exists(indexPath)) {
+            final RomIndex index = load(indexPath, rom.length(), checksum);
+            if (index != null) return index;
+            System.out.println("ROM index is outdated, rebuilding: " + indexPath);
+        }
+
+        final long startTime = System.currentTimeMillis();
+        build(rom, checksum, indexPath);
+        System.out.println("Indexed ROM in " + (System.currentTimeMillis() - startTime) + "ms: " + indexPath);
+        final RomIndex index = load(indexPath, rom.length(), checksum);
+        if (index == null) throw new IOException("Freshly built ROM index is invalid: " + indexPath);
+        return index;
+    }
+
+    private static long checksumOf(RomImage rom) {
+        final CRC32C crc = new CRC32C();
+        crc.update(rom.asReadOnlyBuffer());
+        return crc.getValue();
+    }
+
+    /**
+     * @return The index at indexPath, or null if it doesn't belong to a ROM with the given length and checksum.
+     */
+    private static RomIndex load(Path indexPath, long romLength, long checksum) throws IOException {
+        final FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ);
+        try {
+            final long expectedSize = ADDRESSES_OFFSET + Math.max(0, romLength - GRAM_LENGTH + 1) * 4;
+            if (channel.size() != expectedSize) {
+                channel.close();
+                return null;
+            }
+
+            // Checked before mapping, as an outdated index is replaced right after (Windows refuses to while it's mapped)
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining())
+                if (channel.read(header, header.position()) == -1) break;
+            if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getLong(8) != romLength || header.getLong(16) != checksum) {
+                channel.close();
+                return null;
+            }
+            return new RomIndex(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, expectedSize));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Counting sort of every address by bucket: the first pass counts each bucket, then the addresses are written a chunk of consecutive buckets at a time,
+     * each chunk being another pass collecting the addresses of its buckets on the heap. Chunks hold {@link RomIndex#CHUNK_ADDRESSES}, so large ROMs take a few passes.
+     * Written through the channel rather than a mapping, so the finished file can be moved into place right away (Windows refuses to while it's mapped),
+     * and to a temporary file first, so an interrupted build never leaves a partial index behind.
+     */
+    private static void build(RomImage rom, long checksum, Path indexPath) throws IOException {
+        final int gramCount = Math.max(0, rom.length() - GRAM_LENGTH + 1);
+        final int[] bucketOffsets = new int[BUCKET_COUNT + 1];
+        for (int address = 0; address < gramCount; address++)
+            bucketOffsets[bucketOf(gramAt(rom, address)) + 1]++;
+        int largestBucket = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            largestBucket = Math.max(largestBucket, bucketOffsets[bucket + 1]);
+            bucketOffsets[bucket + 1] += bucketOffsets[bucket];
+        }
+
+        final Path tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        boolean built = false;
+        try {
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final ByteBuffer header = ByteBuffer.allocate((int) ADDRESSES_OFFSET);
+                header.putInt(MAGIC).putInt(VERSION).putLong(rom.length()).putLong(checksum);
+                header.asIntBuffer().put(bucketOffsets);
+                writeFully(channel, header.clear());
+
+                final int chunkCapacity = Math.min(gramCount, Math.max(CHUNK_ADDRESSES, largestBucket));
+                final ByteBuffer chunk = ByteBuffer.allocate(chunkCapacity * 4);
+                final IntBuffer chunkAddresses = chunk.asIntBuffer();
+                final int[] nextSlot = bucketOffsets.clone();
+                for (int firstBucket = 0, endBucket; firstBucket < BUCKET_COUNT; firstBucket = endBucket) {
+                    // The most buckets from firstBucket on whose addresses fit in the chunk
+                    endBucket = firstBucket + 1;
+                    while (endBucket < BUCKET_COUNT && bucketOffsets[endBucket + 1] - bucketOffsets[firstBucket] <= chunkCapacity) endBucket++;
+                    final int chunkStart = bucketOffsets[firstBucket], chunkSize = bucketOffsets[endBucket] - chunkStart;
+                    if (chunkSize == 0) continue;
+
+                    for (int address = 0; address < gramCount; address++) {
+                        final int bucket = bucketOf(gramAt(rom, address));
+                        if (bucket >= firstBucket && bucket < endBucket) chunkAddresses.put(nextSlot[bucket]++ - chunkStart, address);
+                    }
+                    writeFully(channel, chunk.clear().limit(chunkSize * 4));
+                }
+                channel.force(false);
+            }
+            Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING);
+            built = true;
+        } finally {
+            if (!built) Files.deleteIfExists(tempPath);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    private static int gramAt(RomImage rom, int address) {
+        return (rom.get(address) & 0xFF) << 16 | (rom.get(address + 1) & 0xFF) << 8 | (rom.get(address + 2) & 0xFF);
+    }
+
+    private static int gramOf(byte[] values, int offset) {
+        return (values[offset] & 0xFF) << 16 | (values[offset + 1] & 0xFF) << 8 | (values[offset + 2] & 0xFF);
+    }
+
+    private static int bucketOf(int gram) {
+        return (gram * 0x9E3779B1) >>> (32 - BUCKET_BITS);
+    }
+
+    /**
+     * Wraps a pattern into a matcher that looks up its rarest fully fixed 3-gram in this index.
+     * The returned matcher only finds matches in the ROM this index was built from.
+     * @param fallback Returned as-is if the pattern has no 3 consecutive bytes without wildcards.
+     */
+    public RomMatcher matcher(MaskedPattern pattern, RomMatcher fallback) {
+        final byte[] values = pattern.getValues(), masks = pattern.getMasks();
+        int anchorOffset = -1, anchorBucket = -1, anchorSize = Integer.MAX_VALUE;
+        for (int offset = 0; offset + GRAM_LENGTH <= values.length; offset++) {
+            if (masks[offset] != (byte) 0xFF || masks[offset + 1] != (byte) 0xFF || masks[offset + 2] != (byte) 0xFF) continue;
+            final int bucket = bucketOf(gramOf(values, offset));
+            final int size = bucketOffsets.get(bucket + 1) - bucketOffsets.get(bucket);
+            if (size < anchorSize) {
+                anchorOffset = offset;
+                anchorBucket = bucket;
+                anchorSize = size;
+            }
+        }
+        if (anchorOffset == -1) return fallback;
+        return new IndexedMatcher(pattern, anchorOffset, bucketOffsets.get(anchorBucket), bucketOffsets.get(anchorBucket + 1));
+    }
+
+    /**
+     * Closes the underlying channel; the mapping is released once this RomIndex and all matchers created from it are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Checks the addresses [bucketStart, bucketEnd) of a patterns anchor 3-gram, each of which is a potential match at anchorOffset bytes before it.
+     */
+    private final class IndexedMatcher implements RomMatcher {
+        private final MaskedPattern pattern;
+        private final int anchorOffset, bucketStart, bucketEnd;
+
+        private IndexedMatcher(MaskedPattern pattern, int anchorOffset, int bucketStart, int bucketEnd) {
+            this.pattern = pattern;
+            this.anchorOffset = anchorOffset;
+            this.bucketStart = bucketStart;
+            this.bucketEnd = bucketEnd;
+        }
+
+        @Override
+        public int length() {
+            return pattern.length();
+        }
+
+        @Override
+        public long indexOf(RomImage rom, long fromAddress, long toAddress) {
+            final long lastStart = Math.min(toAddress - 1, rom.length() - pattern.length());
+            for (int slot = firstSlotAtOrAfter(Math.max(0, fromAddress) + anchorOffset); slot < bucketEnd; slot++) {
+                final long address = addresses.get(slot) - anchorOffset;
+                if (address > lastStart) return -1;
+                if (address >= 0 && pattern.indexOf(rom, address, address + 1) == address) return address;
+            }
+            return -1;
+        }
+
+        /**
+         * Binary search for the first slot of the bucket containing an address at or after anchorAddress.
+         */
+        private int firstSlotAtOrAfter(long anchorAddress) {
+            int low = bucketStart, high = bucketEnd;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (addresses.get(middle) < anchorAddress) low = middle + 1;
+                else high = middle;
+            }
+            return low;
+        }
+
+        @Override
+        public String toString() {
+            return pattern.toString();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package net.arna.jojowrite.rom;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Finds occurrences of a byte pattern within a {@link RomImage}.
+ * Implementations are immutable, so one matcher may search several ROMs (or parts of one) at once.
+ */
+public interface RomMatcher {
+    /**
+     * @return The amount of bytes a match spans.
+     */
+    int length();
+
+    /**
+     * @return The address of the first match starting within [fromAddress, toAddress), or -1 if there is none.
+     * Matches may extend past toAddress.
+     */
+    long indexOf(RomImage rom, long fromAddress, long toAddress);
+
+    /**
+     * @return The address of the first match starting at or after fromAddress, or -1 if there is none.
+     */
+    default long indexOf(RomImage rom, long fromAddress) {
+        return indexOf(rom, fromAddress, rom.length());
+    }
+
+    /**
+     * Lazily iterates over every match at or after fromAddress in ascending order, including overlapping ones (0909 is found twice in 090909).
+     */
+    default PrimitiveIterator.OfLong matches(RomImage rom, long fromAddress) {
+        return new PrimitiveIterator.OfLong() {
+            private long next = indexOf(rom, fromAddress);
+
+            @Override
+            public boolean hasNext() {
+                return next != -1;
+            }
+
+            @Override
+            public long nextLong() {
+                if (next == -1) throw new NoSuchElementException();
+                final long match = next;
+                next = indexOf(rom, match + 1);
+                return match;
+            }
+        };
+    }
+
+    /**
+     * Compiles a pattern in the syntax of {@link MaskedPattern#parse(String)}, e.g. "D1?? 410B 0009".
+     * Patterns without wildcards are searched for via the faster {@link HorspoolSearch}.
+     * @throws IllegalArgumentException If the pattern is malformed.
+     */
+    static RomMatcher compile(String pattern) {
+        return of(MaskedPattern.parse(pattern));
+    }
+
+    /**
+     * @return The fastest matcher for pattern; {@link HorspoolSearch} if it has no wildcards, otherwise the pattern itself.
+     */
+    static RomMatcher of(MaskedPattern pattern) {
+        return pattern.isExact() ? new HorspoolSearch(pattern.getValues()) : pattern;
+    }
+}
@@ -0,0 +1,116 @@
+package net.arna.jojowrite.rom;
+
+import net.arna.jojowrite.JJWUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A fixed number of {@link RomPageCache#PAGE_SIZE} byte pages of a ROM, each holding its bytes along with their hex encoding,
+ * so redisplaying a region only encodes the pages that weren't displayed recently.
+ * The least recently used page is evicted once the cache is full.
+ * <p>
+ * Not thread-safe, meant to be used from the FX thread.
+ */
+public final class RomPageCache {
+    public static final int PAGE_SIZE = 0x1000;
+
+    /**
+     * @param hex Two lowercase hex digits per byte.
+     */
+    private record Page(byte[] bytes, char[] hex) {}
+
+    private final RomImage rom;
+    private final Map<Integer, Page> pages;
+    private long hits = 0, misses = 0;
+
+    /**
+     * @param capacity The maximum amount of pages kept, at least 1.
+     */
+    public RomPageCache(RomImage rom, int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("RomPageCache capacity must be positive!");
+        this.rom = rom;
+        this.pages = new LinkedHashMap<>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Appends up to byteCount bytes starting at address as lowercase hex, fewer if the ROM ends first.
+     */
+    public void appendHex(long address, int byteCount, StringBuilder out) {
+        final long end = Math.min(address + byteCount, rom.length());
+        out.ensureCapacity(out.length() + (int) Math.max(0, end - address) * 2);
+        while (address < end) {
+            final int offset = (int) (address % PAGE_SIZE);
+            final Page page = pageAt(address);
+            final int count = (int) Math.min(page.bytes.length - offset, end - address);
+            out.append(page.hex, offset * 2, count * 2);
+            address += count;
+        }
+    }
+
+    /**
+     * @return Up to byteCount bytes starting at address, fewer if the ROM ends first.
+     */
+    public byte[] read(long address, int byteCount) {
+        final long end = Math.min(address + byteCount, rom.length());
+        final byte[] bytes = new byte[(int) Math.max(0, end - address)];
+        for (int i = 0; i < bytes.length; ) {
+            final int offset = (int) ((address + i) % PAGE_SIZE);
+            final Page page = pageAt(address + i);
+            final int count = Math.min(page.bytes.length - offset, bytes.length - i);
+            System.arraycopy(page.bytes, offset, bytes, i, count);
+            i += count;
+        }
+        return bytes;
+    }
+
+    private Page pageAt(long address) {
+        final int index = (int) (address / PAGE_SIZE);
+        Page page = pages.get(index);
+        if (page != null) {
+            hits++;
+            return page;
+        }
+
+        misses++;
+        final byte[] bytes = rom.read((long) index * PAGE_SIZE, PAGE_SIZE);
+        final char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = (char) JJWUtils.HEX_ARRAY[(bytes[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = (char) JJWUtils.HEX_ARRAY[bytes[i] & 0xF];
+        }
+        page = new Page(bytes, hex);
+        pages.put(index, page);
+        return page;
+    }
+
+    /**
+     * @return How many page lookups found their page cached.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return How many page lookups had to read and encode their page.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    public void clear() {
+        pages.clear();
+    }
+
+    @Override
+    public String toString() {
+        final long lookups = hits + misses;
+        return "RomPageCache{" + pages.size() + " pages, " + hits + " hits, " + misses + " misses"
+                + (lookups == 0 ? "" : String.format(", %.1f%% hit rate", hits * 100.0 / lookups)) + "}";
+    }
+}
@@ -0,0 +1,153 @@
+package net.arna.jojowrite.rom;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * A {@link RomMatcher} search running in the background on the common {@link ForkJoinPool}.
+ * The ROM is split into segments which are scanned in parallel; a match may start anywhere within its segment and extend into the next one,
+ * so matches spanning a segment border are found exactly once.
+ * <p>
+ * Callbacks are invoked on pool threads, never on the FX thread.
+ */
+public final class RomSearch {
+    /**
+     * Segments of at most this many bytes are scanned sequentially instead of being split further.
+     */
+    private static final int SEGMENT_SIZE = 1 << 20;
+
+    private final RomImage rom;
+    private final RomMatcher matcher;
+    private volatile boolean cancelled = false, done = false;
+
+    private RomSearch(RomImage rom, RomMatcher matcher) {
+        this.rom = rom;
+        this.matcher = matcher;
+    }
+
+    /**
+     * Finds every match in the ROM, up to maxResults of them.
+     * Hits are streamed to onHits in batches, each sorted in ascending order; the batches themselves arrive in any order.
+     * When more than maxResults matches exist, which of them are reported is undefined.
+     * @param onDone Runs once the search completes, or stops early due to maxResults or {@link RomSearch#cancel()}.
+     */
+    public static RomSearch findAll(RomImage rom, RomMatcher matcher, int maxResults, Consumer<long[]> onHits, Runnable onDone) {
+        final RomSearch search = new RomSearch(rom, matcher);
+        final AtomicInteger found = new AtomicInteger();
+        search.start(0, (from, to) -> {
+            long[] hits = new long[16];
+            int count = 0;
+            for (long address = matcher.indexOf(rom, from, to); address != -1; address = matcher.indexOf(rom, address + 1, to)) {
+                if (search.cancelled) return;
+                if (count == hits.length) hits = Arrays.copyOf(hits, count * 2);
+                hits[count++] = address;
+            }
+            if (count == 0) return;
+
+            final int previouslyFound = found.getAndAdd(count);
+            if (previouslyFound + count >= maxResults) {
+                search.cancel();
+                count = Math.max(0, maxResults - previouslyFound);
+                if (count == 0) return;
+            }
+            onHits.accept(Arrays.copyOf(hits, count));
+        }, onDone);
+        return search;
+    }
+
+    /**
+     * Finds the first match at or after fromAddress.
+     * Segments are scanned in parallel, but those past an already found match are skipped.
+     * @param onFound Receives the address of the first match, or -1 if there is none. Not called if the search is cancelled.
+     */
+    public static RomSearch findFirst(RomImage rom, RomMatcher matcher, long fromAddress, LongConsumer onFound) {
+        final RomSearch search = new RomSearch(rom, matcher);
+        final AtomicLong first = new AtomicLong(Long.MAX_VALUE);
+        search.start(Math.max(0, fromAddress), (from, to) -> {
+            if (from >= first.get()) return;
+            final long address = matcher.indexOf(rom, from, to);
+            if (address != -1) first.accumulateAndGet(address, Math::min);
+        }, () -> {
+            if (search.cancelled) return;
+            final long address = first.get();
+            onFound.accept(address == Long.MAX_VALUE ? -1 : address);
+        });
+        return search;
+    }
+
+    private void start(long fromAddress, Scanner scanner, Runnable onDone) {
+        final SegmentTask root = new SegmentTask(this, scanner, fromAddress, rom.length());
+        ForkJoinPool.commonPool().execute(() -> {
+            try {
+                root.invoke();
+            } finally {
+                done = true;
+                onDone.run();
+            }
+        });
+    }
+
+    /**
+     * Stops the search as soon as possible; segments already being scanned finish, but report nothing further.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public RomMatcher getMatcher() {
+        return matcher;
+    }
+
+    /**
+     * Scans match starts within [from, to), splitting the range in half until it fits in a segment.
+     */
+    @SuppressWarnings("serial") // Never serialized, ForkJoinTask is only Serializable for historical reasons
+    private static final class SegmentTask extends RecursiveAction {
+        private final RomSearch search;
+        private final Scanner scanner;
+        private final long from, to;
+
+        private SegmentTask(RomSearch search, Scanner scanner, long from, long to) {
+            this.search = search;
+            this.scanner = scanner;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (search.cancelled) return;
+            if (to - from <= SEGMENT_SIZE) {
+                scanner.scan(from, to);
+                return;
+            }
+
+            final long middle = (from + to) >>> 1;
+            invokeAll(
+                    new SegmentTask(search, scanner, from, middle),
+                    new SegmentTask(search, scanner, middle, to)
+            );
+        }
+    }
+
+    @FunctionalInterface
+    private interface Scanner {
+        /**
+         * Scans a single segment for match starts within [from, to).
+         */
+        void scan(long from, long to);
+    }
+}
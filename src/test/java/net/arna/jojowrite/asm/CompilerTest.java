@@ -0,0 +1,94 @@
+package net.arna.jojowrite.asm;
+
+import net.arna.jojowrite.asm.instruction.Instruction;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilerTest {
+    private static final int ADDRESS = 0x06000000;
+    private static final String ADDRESS_STR = "06000000";
+
+    CompilerTest() {
+        TestDefinitions.load();
+    }
+
+    @Test
+    void triesCandidatesInRegistrationOrder() {
+        // The disassembler gives overlapping opcodes to the instruction registered first, as compile does
+        for (int opcode = 0; opcode <= 0xFFFF; opcode++) {
+            final String text = Disassembler.disassemble(ADDRESS, opcode);
+            if (text == null) continue;
+            final Optional<Instruction> first = Compiler.getPossibleInstructions(ADDRESS_STR, text).findFirst();
+            if (first.isEmpty()) continue; // Backward branches
+            assertEquals(Disassembler.decode(opcode), first.get(), text);
+        }
+    }
+
+    @Test
+    void roundTripsEveryOpcode() {
+        int roundTrips = 0;
+        for (int opcode = 0; opcode <= 0xFFFF; opcode++) {
+            final String text = Disassembler.disassemble(ADDRESS, opcode);
+            if (text == null) continue;
+
+            final CompiledLine compiled = Compiler.compileLine(ADDRESS_STR + ":" + text);
+            if (!compiled.isCompiled()) {
+                // The compiler only assembles forward branches, see Disassembler
+                assertEquals(Diagnostic.Code.BACKWARD_BRANCH, compiled.diagnostics().get(0).code(), text);
+                continue;
+            }
+            assertEquals(opcode, compiled.opcode(), text);
+            assertEquals(opcode, Compiler.compile(ADDRESS_STR, text), text);
+
+            // The encoding of a given candidate agrees with the single pass
+            final Instruction instruction = Disassembler.decode(opcode);
+            assertArrayEquals(Compiler.opcodeToBytes(opcode), Compiler.compileToBytes(instruction, ADDRESS_STR, text), text);
+            assertTrue(Compiler.opcodeToHexString(opcode).equalsIgnoreCase(Compiler.compileToHexString(instruction, ADDRESS_STR, text)), text);
+            roundTrips++;
+        }
+        assertTrue(roundTrips > 40_000, "Only " + roundTrips + " opcodes round-tripped");
+    }
+
+    @Test
+    void matchesParameterlessInstructionsByPrefix() {
+        assertEquals(0x0009, Compiler.compile(ADDRESS_STR, "NOP"));
+        assertEquals(0x0009, Compiler.compile(ADDRESS_STR, "NOPE"));
+        assertEquals(0x0009, Compiler.compile(ADDRESS_STR, "NOP R1"));
+        assertEquals(0x0008, Compiler.compile(ADDRESS_STR, "CLRT"));
+        assertEquals(0x0028, Compiler.compile(ADDRESS_STR, "CLRMAC"));
+        assertEquals(0x0019, Compiler.compile(ADDRESS_STR, "DIV0U"));
+    }
+
+    @Test
+    void dispatchesByMnemonic() {
+        assertEquals(0xE40C, Compiler.compile(ADDRESS_STR, "MOV #$0C,R4"));
+        assertEquals(0x6413, Compiler.compile(ADDRESS_STR, "MOV R1,R4"));
+        assertEquals(0x5122, Compiler.compile(ADDRESS_STR, "MOV.L @($08,R2),R1"));
+        assertEquals(0x2F15, Compiler.compile(ADDRESS_STR, "MOV.W R1,@-R15"));
+        assertEquals(0xA006, Compiler.compile(ADDRESS_STR, "BRA 06000010"));
+        assertEquals(0xA006, Compiler.compile(ADDRESS_STR, "BRA $06000010"));
+    }
+
+    @Test
+    void rejectsInvalidInstructions() {
+        final String[] invalid = {
+                "FOO R1,R2", "mov R1,R4", // Unknown mnemonics, which are case-sensitive
+                "MOV R1", "MOV #$0C", // Missing operands
+                "MOV #0C,R4", "ADD #$GG,R0", // Malformed immediates
+                "MOV R16,R4", "MOV R-1,R4", "MOV R+1,R4", "MOV Rx,R4", "JSR @R-1", // Invalid registers
+                "MOV.L @($03,R2),R1", // Unaligned displacement
+                "BRA 05FFFFF0", "BRA 06000011" // Backward and unaligned branches
+        };
+        for (String instruction : invalid) {
+            assertEquals(Compiler.UNRECOGNIZED_INSTRUCTION, Compiler.compile(ADDRESS_STR, instruction), instruction);
+            assertEquals(0, Compiler.getPossibleInstructions(ADDRESS_STR, instruction).count(), instruction);
+
+            final CompiledLine compiled = Compiler.compileLine(ADDRESS_STR + ":" + instruction);
+            assertFalse(compiled.isCompiled(), instruction);
+            assertFalse(compiled.diagnostics().isEmpty(), instruction);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package net.arna.jojowrite.asm;
+
+/**
+ * Loads the bundled asmdef.txt once for all tests that compile or disassemble instructions.
+ */
+public final class TestDefinitions {
+    private TestDefinitions() {}
+
+    public static synchronized void load() {
+        if (Compiler.getInstructions().isEmpty())
+            Compiler.loadAssemblyDefinitions(TestDefinitions.class.getResourceAsStream("/net/arna/jojowrite/asmdef.txt"));
+    }
+}
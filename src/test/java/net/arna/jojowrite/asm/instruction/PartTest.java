@@ -0,0 +1,43 @@
+package net.arna.jojowrite.asm.instruction;
+
+import net.arna.jojowrite.asm.CompiledLine;
+import net.arna.jojowrite.asm.Compiler;
+import net.arna.jojowrite.asm.Diagnostic;
+import net.arna.jojowrite.asm.TestDefinitions;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartTest {
+    private static final String ADDRESS = "06000000";
+
+    PartTest() {
+        TestDefinitions.load();
+    }
+
+    @Test
+    void matchesRegistersZeroToFifteen() {
+        assertEquals(0x6603, Compiler.compile(ADDRESS, "MOV R0,R6"));
+        assertEquals(0x6693, Compiler.compile(ADDRESS, "MOV R9,R6"));
+        assertEquals(0x66A3, Compiler.compile(ADDRESS, "MOV R10,R6"));
+        assertEquals(0x6F63, Compiler.compile(ADDRESS, "MOV R6,R15"));
+    }
+
+    @Test
+    void rejectsSignedRegisterIndices() {
+        // Integer.parseInt accepts a sign, which made R-1 compile to fff3
+        for (String instruction : new String[] { "MOV R-1,R6", "MOV R+1,R6", "MOV R6,R-1", "MOV R6,R+1", "JSR @R-1" }) {
+            assertEquals(Compiler.UNRECOGNIZED_INSTRUCTION, Compiler.compile(ADDRESS, instruction), instruction);
+            assertEquals(0, Compiler.getPossibleInstructions(ADDRESS, instruction).count(), instruction);
+        }
+    }
+
+    @Test
+    void reportsInvalidRegisters() {
+        for (String instruction : new String[] { "MOV R-1,R6", "MOV Rx,R6", "MOV R16,R6", "MOV R99,R6" }) {
+            final CompiledLine compiled = Compiler.compileLine(ADDRESS + ":" + instruction);
+            assertFalse(compiled.isCompiled(), instruction);
+            assertTrue(compiled.diagnostics().stream().anyMatch(diagnostic -> diagnostic.code() == Diagnostic.Code.INVALID_REGISTER), instruction);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package net.arna.jojowrite.node;
+
+import net.arna.jojowrite.asm.CompiledLine;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParagraphCacheTest {
+    private static final CompiledLine WITH_OUTPUT = new CompiledLine("06000000", 0x0009, List.of(), true);
+
+    /**
+     * What the cache should hold for one paragraph, kept in a plain list.
+     */
+    private static final class Expected {
+        private CompiledLine compiled = CompiledLine.NONE;
+        private String errorText = "";
+    }
+
+    @Test
+    void startsWithOneDirtyParagraph() {
+        final ParagraphCache cache = new ParagraphCache();
+        assertEquals(1, cache.size());
+        assertTrue(cache.get(0).dirty);
+        assertEquals(CompiledLine.NONE, cache.get(0).compiled());
+        assertEquals(0, cache.outputLinesBefore(1));
+    }
+
+    @Test
+    void rejectsOutOfBoundsParagraphs() {
+        final ParagraphCache cache = new ParagraphCache();
+        assertThrows(IndexOutOfBoundsException.class, () -> cache.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> cache.insert(2, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> cache.remove(0, 2));
+    }
+
+    @Test
+    void splitsAndDropsBlocks() {
+        // A single insert far beyond the largest block, then removals across block borders
+        final ParagraphCache cache = new ParagraphCache();
+        cache.insert(1, 5_000);
+        for (int paragraph = 0; paragraph < cache.size(); paragraph += 3) cache.setCompiled(paragraph, WITH_OUTPUT);
+        assertEquals(1_667, cache.outputLinesBefore(cache.size()));
+        assertEquals(86, cache.outputLinesBefore(256));
+
+        cache.remove(200, 4_000); // Starts and ends inside blocks, dropping the ones between
+        assertEquals(1_001, cache.size());
+        assertEquals(67 + countMultiplesOfThree(4_200, 5_001), cache.outputLinesBefore(cache.size()));
+
+        cache.remove(0, cache.size());
+        assertEquals(0, cache.size());
+        cache.insert(0, 1);
+        assertEquals(0, cache.outputLinesBefore(1));
+    }
+
+    @Test
+    void matchesPlainListAfterRandomEdits() {
+        final Random random = new Random(3);
+        final ParagraphCache cache = new ParagraphCache();
+        final List<Expected> expected = new ArrayList<>(List.of(new Expected()));
+
+        for (int edit = 0; edit < 50_000; edit++) {
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    final int paragraph = random.nextInt(expected.size() + 1);
+                    // Occasionally large, like pasting or loading a file
+                    final int count = random.nextInt(random.nextInt(50) == 0 ? 2_000 : 5);
+                    cache.insert(paragraph, count);
+                    for (int i = 0; i < count; i++) expected.add(paragraph, new Expected());
+                }
+                case 1 -> {
+                    final int paragraph = random.nextInt(expected.size());
+                    final int count = Math.min(expected.size() - paragraph, random.nextInt(random.nextInt(50) == 0 ? 2_000 : 5));
+                    if (count == expected.size()) break; // A document always has a paragraph
+                    cache.remove(paragraph, count);
+                    expected.subList(paragraph, paragraph + count).clear();
+                }
+                case 2 -> {
+                    final int paragraph = random.nextInt(expected.size());
+                    final CompiledLine compiled = random.nextBoolean() ? WITH_OUTPUT : CompiledLine.NONE;
+                    cache.setCompiled(paragraph, compiled);
+                    expected.get(paragraph).compiled = compiled;
+                }
+                default -> {
+                    final int paragraph = random.nextInt(expected.size());
+                    final String errorText = random.nextInt(3) == 0 ? "Ln. " + (paragraph + 1) + ": error\n" : "";
+                    cache.setErrorText(paragraph, errorText);
+                    expected.get(paragraph).errorText = errorText;
+                }
+            }
+            assertEquals(expected.size(), cache.size());
+
+            final int paragraph = random.nextInt(expected.size() + 1);
+            assertEquals(outputLinesBefore(expected, paragraph), cache.outputLinesBefore(paragraph), "Output lines before " + paragraph);
+            assertEquals(errorLengthBefore(expected, paragraph), cache.errorLengthBefore(paragraph), "Error length before " + paragraph);
+            if (edit % 1_000 == 0) assertMatches(expected, cache, random.nextInt(expected.size() + 1));
+        }
+        assertMatches(expected, cache, 0);
+    }
+
+    /**
+     * Compares every paragraph, and the error text {@link ParagraphCache#forEachWithErrors} visits from fromParagraph on.
+     */
+    private static void assertMatches(List<Expected> expected, ParagraphCache cache, int fromParagraph) {
+        for (int paragraph = 0; paragraph < expected.size(); paragraph++) {
+            assertEquals(expected.get(paragraph).compiled, cache.get(paragraph).compiled());
+            assertEquals(expected.get(paragraph).errorText, cache.get(paragraph).errorText());
+        }
+
+        final StringBuilder expectedErrors = new StringBuilder(), visitedErrors = new StringBuilder();
+        for (int paragraph = fromParagraph; paragraph < expected.size(); paragraph++)
+            if (!expected.get(paragraph).errorText.isEmpty()) expectedErrors.append(paragraph).append(expected.get(paragraph).errorText);
+        cache.forEachWithErrors(fromParagraph, (cached, paragraph) -> visitedErrors.append(paragraph).append(cached.errorText()));
+        assertEquals(expectedErrors.toString(), visitedErrors.toString());
+    }
+
+    private static int outputLinesBefore(List<Expected> expected, int paragraph) {
+        int outputLines = 0;
+        for (int i = 0; i < paragraph; i++)
+            if (expected.get(i).compiled.hasOutputLine()) outputLines++;
+        return outputLines;
+    }
+
+    private static int errorLengthBefore(List<Expected> expected, int paragraph) {
+        int errorLength = 0;
+        for (int i = 0; i < paragraph; i++)
+            errorLength += expected.get(i).errorText.length();
+        return errorLength;
+    }
+
+    private static int countMultiplesOfThree(int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++)
+            if (i % 3 == 0) count++;
+        return count;
+    }
+}
@@ -0,0 +1,143 @@
+package net.arna.jojowrite.overwrite;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OverwriteFileTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripIsLossless() throws IOException {
+        final Random random = new Random(1);
+        final OverwriteStore store = new OverwriteStore();
+        for (int i = 0; i < 5_000; i++) {
+            final byte[] bytes = new byte[random.nextInt(40)]; // Including empty overwrites
+            random.nextBytes(bytes);
+            final String comment = i % 5 == 0 ? "" : "c;ö 日本 " + i; // Separators and non-ASCII characters
+            store.add(random.nextInt(3) == 0 ? random.nextInt() : random.nextInt(0x200000), bytes, comment);
+        }
+
+        final File file = directory.resolve("round-trip.overwrite").toFile();
+        OverwriteFile.write(store, file);
+        assertTrue(OverwriteFile.isBinary(file));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        final OverwriteFile read = OverwriteFile.read(file);
+        assertEquals(store.size(), read.size());
+        for (int position = 0; position < store.size(); position++) {
+            assertEquals(store.getAddress(position), read.getAddress(position));
+            assertEquals(store.getLength(position), read.getLength(position));
+            assertArrayEquals(store.getBytes(position), read.getBytes(position));
+            assertEquals(store.getComment(position), read.getComment(position));
+        }
+
+        // Converting back to the text format gives the same file
+        assertEquals(toText(store), toText(OverwriteStore.read(file)));
+
+        // An opened file reads the same overwrites through its channel
+        try (OverwriteFile opened = OverwriteFile.open(file)) {
+            assertEquals(store.size(), opened.size());
+            for (int position = 0; position < store.size(); position += 7) {
+                assertEquals(store.getAddress(position), opened.getAddress(position));
+                assertArrayEquals(store.getBytes(position), opened.getBytes(position));
+                assertEquals(store.getComment(position), opened.getComment(position));
+            }
+        }
+    }
+
+    @Test
+    void addressIndexMatchesBruteForce() throws IOException {
+        final Random random = new Random(1);
+        final OverwriteStore store = new OverwriteStore();
+        for (int i = 0; i < 2_000; i++) {
+            // Some overwrites with the sign bit set, to check the index is sorted unsigned
+            final int address = random.nextInt(0x1000) + (random.nextInt(20) == 0 ? 0x90000000 : 0);
+            store.add(address, new byte[random.nextInt(random.nextInt(10) == 0 ? 300 : 8)], "");
+        }
+        final File file = directory.resolve("index.overwrite").toFile();
+        OverwriteFile.write(store, file);
+
+        try (OverwriteFile read = OverwriteFile.read(file); OverwriteFile opened = OverwriteFile.open(file)) {
+            for (int query = 0; query < 2_000; query++) {
+                final long from = Integer.toUnsignedLong(random.nextInt(0x1100) + (random.nextInt(10) == 0 ? 0x90000000 : 0));
+                final long to = from + random.nextInt(64);
+                final int[] expected = store.positionsIn(from, to);
+                assertArrayEquals(expected, read.positionsIn(from, to), "[" + from + ", " + to + ")");
+                assertArrayEquals(expected, opened.positionsIn(from, to), "[" + from + ", " + to + ")");
+            }
+        }
+    }
+
+    @Test
+    void writesEmptyStore() throws IOException {
+        final File file = directory.resolve("empty.overwrite").toFile();
+        OverwriteFile.write(new OverwriteStore(), file);
+        assertEquals(0, OverwriteFile.read(file).size());
+    }
+
+    @Test
+    void replacesExistingFile() throws IOException {
+        final File file = directory.resolve("replaced.overwrite").toFile();
+        final OverwriteStore store = new OverwriteStore();
+        store.add(0x100, new byte[] { 1, 2 }, "first");
+        OverwriteFile.write(store, file);
+        OverwriteFile.read(file);
+
+        store.setComment(0, "second");
+        try (OverwriteFile opened = OverwriteFile.open(file)) {
+            // Nothing is mapped, so the file can be replaced while open
+            OverwriteFile.write(store, file);
+            assertEquals("first", opened.getComment(0));
+        }
+        assertEquals("second", OverwriteFile.read(file).getComment(0));
+    }
+
+    @Test
+    void rejectsTextAndCorruptFiles() throws IOException {
+        final Path text = directory.resolve("text.overwrite");
+        Files.writeString(text, "00000100;0102;comment\n");
+        assertFalse(OverwriteFile.isBinary(text.toFile()));
+        assertThrows(IOException.class, () -> OverwriteFile.read(text.toFile()));
+
+        // Valid magic and version, then a header cut short
+        final Path truncated = directory.resolve("truncated.overwrite");
+        Files.write(truncated, new byte[] { 0x4A, 0x4A, 0x57, 0x4F, 0, 0, 0, 1, 0 });
+        assertTrue(OverwriteFile.isBinary(truncated.toFile()));
+        assertThrows(IOException.class, () -> OverwriteFile.read(truncated.toFile()));
+        assertThrows(IOException.class, () -> OverwriteFile.open(truncated.toFile()));
+
+        // A record count larger than the file
+        final Path corrupt = directory.resolve("corrupt.overwrite");
+        Files.write(corrupt, new byte[] { 0x4A, 0x4A, 0x57, 0x4F, 0, 0, 0, 1, 0, 0, 0, 9, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+        assertThrows(IOException.class, () -> OverwriteFile.read(corrupt.toFile()));
+        assertThrows(IOException.class, () -> OverwriteFile.open(corrupt.toFile()));
+    }
+
+    @Test
+    void accessOutOfBoundsIsRejected() throws IOException {
+        final File file = directory.resolve("bounds.overwrite").toFile();
+        final OverwriteStore store = new OverwriteStore();
+        store.add(0, new byte[] { 9 }, "");
+        OverwriteFile.write(store, file);
+
+        final OverwriteFile read = OverwriteFile.read(file);
+        assertThrows(IndexOutOfBoundsException.class, () -> read.getBytes(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> read.getAddress(-1));
+    }
+
+    private static String toText(OverwriteStore store) throws IOException {
+        final StringWriter writer = new StringWriter();
+        store.write(writer);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package net.arna.jojowrite.overwrite;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OverwriteIndexTest {
+    @Test
+    void laterPositionsShiftOnInsertAndRemove() {
+        final OverwriteIndex index = new OverwriteIndex();
+        index.insert(0, 0x100, 4);
+        index.insert(1, 0x200, 4);
+        index.insert(0, 0x300, 4);
+        assertArrayEquals(new int[] { 0, 1, 2 }, index.query(0, 0x400));
+        assertArrayEquals(new int[] { 1 }, index.query(0x100, 0x104));
+        assertArrayEquals(new int[] { 0 }, index.query(0x300, 0x301));
+
+        index.remove(1);
+        assertArrayEquals(new int[0], index.query(0x100, 0x104));
+        assertArrayEquals(new int[] { 1 }, index.query(0x200, 0x204));
+    }
+
+    @Test
+    void queryExcludesTouchingRanges() {
+        final OverwriteIndex index = OverwriteIndex.of(new int[] { 0x10, 0x20 }, new int[] { 0x10, 0 }, 2);
+        assertArrayEquals(new int[0], index.query(0x00, 0x10));
+        assertArrayEquals(new int[] { 0 }, index.query(0x1F, 0x20));
+        assertArrayEquals(new int[0], index.query(0x20, 0x30)); // Empty overwrites cover nothing
+        assertArrayEquals(new int[0], index.query(0x18, 0x18));
+    }
+
+    @Test
+    void handlesAddressesAboveSignedRange() {
+        final OverwriteIndex index = OverwriteIndex.of(new int[] { 0x90000000, 0x10 }, new int[] { 4, 4 }, 2);
+        assertArrayEquals(new int[] { 0 }, index.query(0x90000002L, 0x90000003L));
+        assertArrayEquals(new int[] { 1 }, index.query(0, 0x80000000L));
+    }
+
+    @Test
+    void matchesBruteForceAfterRandomEdits() {
+        final Random random = new Random(1);
+        for (int round = 0; round < 200; round++) {
+            final int count = random.nextInt(300);
+            final int[] addresses = new int[count], lengths = new int[count];
+            final List<long[]> ranges = new ArrayList<>(); // {start, end}, by position
+            for (int i = 0; i < count; i++) {
+                addresses[i] = randomAddress(random);
+                lengths[i] = random.nextInt(random.nextInt(10) == 0 ? 500 : 8);
+                ranges.add(range(addresses[i], lengths[i]));
+            }
+            final OverwriteIndex index = OverwriteIndex.of(addresses, lengths, count);
+
+            for (int edit = 0; edit < 300; edit++) {
+                final int address = randomAddress(random), length = random.nextInt(30);
+                switch (random.nextInt(4)) {
+                    case 0 -> {
+                        final int position = random.nextInt(ranges.size() + 1);
+                        index.insert(position, address, length);
+                        ranges.add(position, range(address, length));
+                    }
+                    case 1 -> {
+                        if (ranges.isEmpty()) break;
+                        final int position = random.nextInt(ranges.size());
+                        index.remove(position);
+                        ranges.remove(position);
+                    }
+                    case 2 -> {
+                        if (ranges.isEmpty()) break;
+                        final int position = random.nextInt(ranges.size());
+                        index.update(position, address, length);
+                        ranges.set(position, range(address, length));
+                    }
+                    default -> {} // Query without editing, so the tree is reused
+                }
+                assertEquals(ranges.size(), index.size());
+
+                final long from = Integer.toUnsignedLong(randomAddress(random)), to = from + random.nextInt(300);
+                assertArrayEquals(bruteForceQuery(ranges, from, to), index.query(from, to),
+                        "Round " + round + ", edit " + edit + ", [" + from + ", " + to + ")");
+            }
+        }
+    }
+
+    /**
+     * @return Mostly small addresses so ranges overlap, sometimes one with the sign bit set.
+     */
+    private static int randomAddress(Random random) {
+        return random.nextInt(2100) + (random.nextInt(20) == 0 ? 0x90000000 : 0);
+    }
+
+    private static long[] range(int address, int length) {
+        final long start = Integer.toUnsignedLong(address);
+        return new long[] { start, start + length };
+    }
+
+    private static int[] bruteForceQuery(List<long[]> ranges, long from, long to) {
+        final int[] found = new int[ranges.size()];
+        int count = 0;
+        for (int position = 0; position < ranges.size(); position++)
+            if (from < to && ranges.get(position)[0] < to && ranges.get(position)[1] > from) found[count++] = position;
+        return Arrays.copyOf(found, count);
+    }
+}
@@ -0,0 +1,94 @@
+package net.arna.jojowrite.rom;
+
+import net.arna.jojowrite.JJWUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Times {@link HorspoolSearch} against the RandomAccessFile scan findAndDisplayInROM used before it,
+ * by searching a random image for patterns it doesn't contain, so the whole image is scanned.
+ * <p>
+ * Run with gradle benchmarkSearch, optionally passing the image size in MB (64 by default).
+ */
+public final class HorspoolSearchBenchmark {
+    private static final String[] PATTERNS = { "d1ff410b0009", "2f862f962fa62fb62fc62fd6" };
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        final int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        final File file = Files.createTempFile("jojowrite-benchmark", ".rom").toFile();
+        file.deleteOnExit();
+        writeRandomImage(file, megabytes << 20);
+
+        System.out.println("Best of " + RUNS + " on a " + megabytes + "MB random image");
+        try (RomImage rom = RomImage.openReadOnly(file); RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            for (String hexStr : PATTERNS) {
+                final byte[] pattern = JJWUtils.hexStringToBytes(hexStr);
+                final HorspoolSearch search = new HorspoolSearch(pattern);
+
+                long previousBest = Long.MAX_VALUE, horspoolBest = Long.MAX_VALUE, previousResult = 0, horspoolResult = 0;
+                for (int run = 0; run < RUNS; run++) {
+                    long start = System.nanoTime();
+                    previousResult = previousIndexOf(raf, pattern, 0);
+                    previousBest = Math.min(previousBest, System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    horspoolResult = search.indexOf(rom, 0);
+                    horspoolBest = Math.min(horspoolBest, System.nanoTime() - start);
+                }
+
+                System.out.printf("%-26s previous %5d ms (found %d)   Horspool %5d ms (found %d)%n", hexStr,
+                        previousBest / 1_000_000, previousResult, horspoolBest / 1_000_000, horspoolResult);
+            }
+        }
+    }
+
+    /**
+     * Fills file with random bytes below 0xD0, so none of {@link HorspoolSearchBenchmark#PATTERNS} can occur.
+     */
+    private static void writeRandomImage(File file, int length) throws IOException {
+        final Random random = new Random(64);
+        final ByteBuffer chunk = ByteBuffer.allocate(1 << 20);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            for (int written = 0; written < length; written += chunk.capacity()) {
+                chunk.clear();
+                while (chunk.hasRemaining()) chunk.put((byte) random.nextInt(0xD0));
+                chunk.flip();
+                while (chunk.hasRemaining()) channel.write(chunk);
+            }
+        }
+    }
+
+    /**
+     * The scan findAndDisplayInROM used before {@link HorspoolSearch}, returning the match instead of showing it.
+     * Reads 128 byte chunks and restarts at the first byte of the pattern on a mismatch, so it misses matches such as 0901 in 090901.
+     */
+    private static long previousIndexOf(RandomAccessFile raf, byte[] bytes, long offsetAddress) throws IOException {
+        final int hexStrLength = bytes.length;
+        final int romRAFLength = (int) raf.length();
+        int bufferSize = Math.min(Math.max(128, hexStrLength * 4), romRAFLength);
+
+        raf.seek(offsetAddress);
+        final byte[] readBytes = new byte[bufferSize];
+        while (raf.read(readBytes) != -1) {
+            final long pointer = raf.getFilePointer();
+            int matchingBytes = 0;
+            for (int i = 0; i < bufferSize; i++) {
+                final byte readByte = readBytes[i];
+                if (bytes[matchingBytes] == readByte) matchingBytes++;
+                else matchingBytes = bytes[0] == readByte ? 1 : 0;
+
+                if (matchingBytes == hexStrLength) return pointer - bufferSize - hexStrLength + i + 1;
+            }
+            if (pointer != romRAFLength) raf.seek(pointer - hexStrLength - 1);
+        }
+        return -1;
+    }
+}
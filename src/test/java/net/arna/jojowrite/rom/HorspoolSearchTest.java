@@ -0,0 +1,46 @@
+package net.arna.jojowrite.rom;
+
+import net.arna.jojowrite.JJWUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.PrimitiveIterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HorspoolSearchTest {
+    @Test
+    void findsOverlappingMatches() throws IOException {
+        try (RomImage rom = TestRoms.of(JJWUtils.hexStringToBytes("090909"))) {
+            final PrimitiveIterator.OfLong matches = new HorspoolSearch(JJWUtils.hexStringToBytes("0909")).matches(rom, 0);
+            assertEquals(0, matches.nextLong());
+            assertEquals(1, matches.nextLong());
+            assertFalse(matches.hasNext());
+        }
+    }
+
+    @Test
+    void findsMatchAfterPartialMismatch() throws IOException {
+        // The previous byte-by-byte scan restarted after the mismatching byte and missed this
+        try (RomImage rom = TestRoms.of(JJWUtils.hexStringToBytes("090901"))) {
+            assertEquals(1, new HorspoolSearch(JJWUtils.hexStringToBytes("0901")).indexOf(rom, 0));
+        }
+    }
+
+    @Test
+    void respectsSearchBounds() throws IOException {
+        try (RomImage rom = TestRoms.of(JJWUtils.hexStringToBytes("AB00AB00AB"))) {
+            final HorspoolSearch search = new HorspoolSearch(JJWUtils.hexStringToBytes("AB00"));
+            assertEquals(2, search.indexOf(rom, 1));
+            assertEquals(-1, search.indexOf(rom, 3));
+            // Matches may extend past toAddress, but must start before it
+            assertEquals(2, search.indexOf(rom, 1, 3));
+            assertEquals(-1, search.indexOf(rom, 1, 2));
+        }
+    }
+
+    @Test
+    void rejectsEmptyPattern() {
+        assertThrows(IllegalArgumentException.class, () -> new HorspoolSearch(new byte[0]));
+    }
+}
@@ -0,0 +1,44 @@
+package net.arna.jojowrite.rom;
+
+import net.arna.jojowrite.JJWUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MaskedPatternTest {
+    @Test
+    void parsesWildcardNibbles() {
+        final MaskedPattern pattern = MaskedPattern.parse("D1?? 4?0B");
+        assertArrayEquals(new byte[] { (byte) 0xD1, 0x00, 0x40, 0x0B }, pattern.getValues());
+        assertArrayEquals(new byte[] { (byte) 0xFF, 0x00, (byte) 0xF0, (byte) 0xFF }, pattern.getMasks());
+        assertEquals("d1??4?0b", pattern.toString());
+        assertFalse(pattern.isExact());
+        assertTrue(MaskedPattern.parse("d1ff 410b").isExact());
+    }
+
+    @Test
+    void rejectsMalformedPatterns() {
+        assertThrows(IllegalArgumentException.class, () -> MaskedPattern.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> MaskedPattern.parse("D1?"));
+        assertThrows(IllegalArgumentException.class, () -> MaskedPattern.parse("D1XX"));
+    }
+
+    @Test
+    void compilesExactPatternsToHorspool() {
+        assertTrue(RomMatcher.compile("D1FF 410B") instanceof HorspoolSearch);
+        assertTrue(RomMatcher.compile("D1?? 410B") instanceof MaskedPattern);
+    }
+
+    @Test
+    void findsWildcardMatches() throws IOException {
+        try (RomImage rom = TestRoms.of(JJWUtils.hexStringToBytes("D104410B0009D1FF410B"))) {
+            final MaskedPattern pattern = MaskedPattern.parse("D1?? 410B");
+            assertEquals(0, pattern.indexOf(rom, 0));
+            assertEquals(6, pattern.indexOf(rom, 1));
+            assertEquals(-1, pattern.indexOf(rom, 7));
+            assertEquals(-1, pattern.indexOf(rom, 1, 6));
+        }
+    }
+}
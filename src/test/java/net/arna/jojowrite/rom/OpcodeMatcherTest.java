@@ -0,0 +1,39 @@
+package net.arna.jojowrite.rom;
+
+import net.arna.jojowrite.JJWUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpcodeMatcherTest {
+    @Test
+    void findsOnlyAlignedWords() throws IOException {
+        // 0x0009 (NOP) at the unaligned address 1 and the aligned address 4
+        try (RomImage rom = TestRoms.of(JJWUtils.hexStringToBytes("0000091100090000"))) {
+            final OpcodeMatcher nop = new OpcodeMatcher(new int[] { 0x0009 }, new int[] { 0xFFFF }, "NOP");
+            assertEquals(4, nop.indexOf(rom, 0));
+            assertEquals(4, nop.indexOf(rom, 3));
+            assertEquals(-1, nop.indexOf(rom, 5));
+            assertEquals(-1, nop.indexOf(rom, 0, 4));
+        }
+    }
+
+    @Test
+    void matchesAnyOfSeveralPatterns() throws IOException {
+        // MOV Rm,Rn (6nm3) or JSR @Rn (4n0B)
+        try (RomImage rom = TestRoms.of(JJWUtils.hexStringToBytes("0009410B00096123"))) {
+            final OpcodeMatcher matcher = new OpcodeMatcher(new int[] { 0x6003, 0x400B }, new int[] { 0xF00F, 0xF0FF }, "MOV/JSR");
+            assertEquals(2, matcher.indexOf(rom, 0));
+            assertEquals(6, matcher.indexOf(rom, 3));
+            assertEquals("MOV/JSR", matcher.toString());
+        }
+    }
+
+    @Test
+    void rejectsEmptyPatterns() {
+        assertThrows(IllegalArgumentException.class, () -> new OpcodeMatcher(new int[0], new int[0], ""));
+        assertThrows(IllegalArgumentException.class, () -> new OpcodeMatcher(new int[] { 0 }, new int[0], ""));
+    }
+}
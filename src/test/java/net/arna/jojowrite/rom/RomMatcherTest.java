@@ -0,0 +1,100 @@
+package net.arna.jojowrite.rom;
+
+import net.arna.jojowrite.JJWUtils;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.StringJoiner;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares every {@link RomMatcher} implementation against a naive scan over random ROMs.
+ */
+class RomMatcherTest {
+    // Not multiples of 8, so the last candidates of a ROM can't be read as whole words
+    private static final int[] ROM_LENGTHS = { 0, 1, 2, 7, 9, 30, (1 << 14) + 5 };
+    // Few distinct byte values, so short patterns repeat and overlap often
+    private static final int ALPHABET_SIZE = 3;
+
+    /**
+     * A random matcher, along with the addresses it may match at and what it should match there.
+     */
+    private record Candidate(RomMatcher matcher, String description, int alignment, TestRoms.NaiveMatch match) {}
+
+    static Stream<Arguments> matchers() {
+        return Stream.of(
+                Arguments.of("HorspoolSearch", (Function<Random, Candidate>) RomMatcherTest::randomHorspoolSearch),
+                Arguments.of("MaskedPattern", (Function<Random, Candidate>) RomMatcherTest::randomMaskedPattern),
+                Arguments.of("OpcodeMatcher", (Function<Random, Candidate>) RomMatcherTest::randomOpcodeMatcher)
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("matchers")
+    void matchesNaiveScan(String name, Function<Random, Candidate> candidates) throws IOException {
+        final Random random = new Random(1);
+        for (int romLength : ROM_LENGTHS) {
+            final byte[] bytes = TestRoms.randomBytes(random, romLength, ALPHABET_SIZE);
+            try (RomImage rom = TestRoms.of(bytes)) {
+                for (int iteration = 0; iteration < 5_000; iteration++) {
+                    final Candidate candidate = candidates.apply(random);
+                    // Bias towards the end of the ROM, where the pattern may no longer fit
+                    final int from = random.nextBoolean() ? random.nextInt(romLength + 1) : romLength - random.nextInt(Math.min(romLength, 32) + 1);
+                    final int to = from + random.nextInt(romLength + 1 - from);
+                    assertEquals(
+                            TestRoms.naiveIndexOf(bytes, from, to, candidate.alignment(), candidate.matcher().length(), candidate.match()),
+                            candidate.matcher().indexOf(rom, from, to),
+                            name + " " + candidate.description() + " in a ROM of " + romLength + " bytes within [" + from + ", " + to + ")"
+                    );
+                }
+            }
+        }
+    }
+
+    private static Candidate randomHorspoolSearch(Random random) {
+        final byte[] pattern = TestRoms.randomBytes(random, 1 + random.nextInt(12), ALPHABET_SIZE);
+        return new Candidate(new HorspoolSearch(pattern), JJWUtils.bytesToHex(pattern), 1, (bytes, address) -> {
+            for (int i = 0; i < pattern.length; i++)
+                if (bytes[address + i] != pattern[i]) return false;
+            return true;
+        });
+    }
+
+    private static Candidate randomMaskedPattern(Random random) {
+        // Long enough to be compared a word at a time
+        final int length = 1 + random.nextInt(20);
+        final byte[] values = TestRoms.randomBytes(random, length, ALPHABET_SIZE), masks = new byte[length];
+        for (int i = 0; i < length; i++) masks[i] = (byte) (random.nextInt(4) == 0 ? 0 : random.nextBoolean() ? 0xFF : 0x0F);
+        final MaskedPattern pattern = new MaskedPattern(values, masks);
+        final byte[] maskedValues = pattern.getValues();
+        return new Candidate(pattern, pattern.toString(), 1, (bytes, address) -> {
+            for (int i = 0; i < length; i++)
+                if ((bytes[address + i] & masks[i]) != maskedValues[i]) return false;
+            return true;
+        });
+    }
+
+    private static Candidate randomOpcodeMatcher(Random random) {
+        final int patternCount = 1 + random.nextInt(3);
+        final int[] values = new int[patternCount], masks = new int[patternCount];
+        final StringJoiner description = new StringJoiner(", ");
+        for (int i = 0; i < patternCount; i++) {
+            // Few significant bits per nibble, so words match often
+            values[i] = random.nextInt(0x10000) & 0x0303;
+            masks[i] = random.nextInt(0x10000) | random.nextInt(0x10000);
+            description.add(String.format("%04X/%04X", values[i], masks[i]));
+        }
+        return new Candidate(new OpcodeMatcher(values, masks, description.toString()), description.toString(), 2, (bytes, address) -> {
+            final int word = (bytes[address] & 0xFF) << 8 | bytes[address + 1] & 0xFF;
+            for (int i = 0; i < patternCount; i++)
+                if ((word & masks[i]) == (values[i] & masks[i])) return true;
+            return false;
+        });
+    }
+}
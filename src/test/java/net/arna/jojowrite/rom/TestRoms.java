@@ -0,0 +1,50 @@
+package net.arna.jojowrite.rom;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Creates small {@link RomImage}s for tests.
+ */
+final class TestRoms {
+    private TestRoms() {}
+
+    /**
+     * @return A read-only RomImage of a temporary file containing bytes, deleted once the JVM exits.
+     */
+    static RomImage of(byte[] bytes) throws IOException {
+        final File file = Files.createTempFile("jojowrite-test", ".rom").toFile();
+        file.deleteOnExit();
+        Files.write(file.toPath(), bytes);
+        return RomImage.openReadOnly(file);
+    }
+
+    /**
+     * @return length random bytes drawn from the first alphabetSize byte values, so short patterns repeat and overlap often.
+     */
+    static byte[] randomBytes(Random random, int length, int alphabetSize) {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) bytes[i] = (byte) random.nextInt(alphabetSize);
+        return bytes;
+    }
+
+    /**
+     * Whether a pattern occurs at an address, checked without any of the shortcuts a {@link RomMatcher} takes.
+     */
+    @FunctionalInterface
+    interface NaiveMatch {
+        boolean at(byte[] bytes, int address);
+    }
+
+    /**
+     * Tries every alignment-aligned address in [from, to) whose length bytes lie within bytes.
+     * @return The first address a pattern occurs at according to match, or -1.
+     */
+    static long naiveIndexOf(byte[] bytes, int from, int to, int alignment, int length, NaiveMatch match) {
+        for (int address = from + Math.floorMod(-from, alignment); address < to && address + length <= bytes.length; address += alignment)
+            if (match.at(bytes, address)) return address;
+        return -1;
+    }
+}